@@ -1,13 +1,18 @@
 package Controller;// HAPI FHIR API
-import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
-import ca.uhn.fhir.util.BundleUtil;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
-import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.*;
 
 // UTL
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * The class that used to interact with the HAPI FHIR API. Other classes will depend on this to get their necessary information.
@@ -20,8 +25,35 @@ public class FHIRAPI {
     private String source;
     private String practitionerID;
 
-    // Create a context and a client
-    private FhirContext ctx;
+    // Amount of patients resolved per batch search
+    public static final int DEFAULT_BATCH_SIZE = 50;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Observation codes and the amount of observations per page of the bulk observation search
+    private static final String CHOLESTEROL_CODE = "2093-3";
+    private static final String BLOOD_PRESSURE_CODE = "55284-4";
+    private static final int OBSERVATION_PAGE_SIZE = 200;
+
+    // Most pages read by one observation search of a chunk, patients with few readings do not page through all history
+    private static final int MAX_OBSERVATION_PAGES = 5;
+
+    // Amount of encounters per page of the encounter search, only their subject is requested so the pages stay small
+    private static final int ENCOUNTER_PAGE_SIZE = 500;
+
+    // Latest _lastUpdated seen for each patient and observation code, later searches only ask for newer observations
+    private final Map<String, Date> watermarks = new ConcurrentHashMap<String, Date>();
+
+    // Keeps the later of two watermarks
+    private static final BiFunction<Date, Date, Date> LATER = new BiFunction<Date, Date, Date>() {
+        public Date apply(Date first, Date second) {
+            return first.after(second) ? first : second;
+        }
+    };
+
+    // Practitioners and patients rarely change, so reads are revalidated against a cache shared by every instance
+    private static final ResourceCache RESOURCE_CACHE = FHIRClientFactory.getResourceCache();
+
+    // Create a client
     private String URL;
     private IGenericClient client;
 
@@ -29,10 +61,9 @@ public class FHIRAPI {
      * The constructor will only create the external API based information, everything else is done by setters and getters.
      */
     public FHIRAPI() {
-        // HAPI FHIR API
-        this.ctx = FhirContext.forR4();
-        this.URL = "https://fhir.monash.edu/hapi-fhir-jpaserver/fhir/";
-        this.client = ctx.newRestfulGenericClient(URL);
+        // HAPI FHIR API, the context and connection pool are shared by every instance
+        this.URL = FHIRClientFactory.getServerURL();
+        this.client = FHIRClientFactory.newClient();
     }
 
     /**
@@ -43,7 +74,7 @@ public class FHIRAPI {
     public boolean verifyPractitioner(String id) {
         try {
             // Peform a call to find a practitioner
-            Practitioner practitioner = client.read().resource(Practitioner.class).withId(id).execute();
+            Practitioner practitioner = RESOURCE_CACHE.read(client, Practitioner.class, id);
             return true;
         }
         catch (Exception e) {
@@ -53,49 +84,67 @@ public class FHIRAPI {
     }
 
     /**
-     * This method returns all the patient ids for the practitioner to use. Bases it on encounters with the practitioner.
-     * @return An arraylist of the patient ids.
+     * Walks through the encounters with the practitioner and hands over the ids of the patients as soon as each page
+     * arrives. The next page is already requested while the current one is being handed over. Only the subject of the
+     * encounters is requested, as that is all that is needed to find the patients.
+     * @param consumer Receives the ids of the patients first seen in each page, in encounter order.
+     * @return Whether every page was read, false if a page could not be loaded and the rest were skipped.
      */
-    public ArrayList<String> getPatientListsURL() {
-        ArrayList<String> patientList = new ArrayList();
-        ArrayList<IBaseResource> encounterList = new ArrayList();
+    public boolean streamPatientIDs(Consumer<List<String>> consumer) {
+        Set<String> seenPatients = new HashSet<String>();
+        ExecutorService prefetcher = Executors.newSingleThreadExecutor();
+        boolean complete = false;
 
         // Once an exception happens, we assume the patient list is done
         try {
             // Perform a search to find the patients
             Bundle bundle = this.client
                     .search()
-                    .byUrl(this.URL + "Encounter?participant.identifier=" + this.source + "|" + this.practitionerIdentifier)
+                    .byUrl(this.URL + "Encounter?participant.identifier=" + this.source + "|" + this.practitionerIdentifier
+                            + "&_elements=subject&_count=" + ENCOUNTER_PAGE_SIZE)
                     .returnBundle(Bundle.class)
                     .execute();
 
-            // Load the subsequent pages
-            while (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+            while (bundle != null) {
+                // Start loading the next page straight away
+                Future<Bundle> nextPage = null;
+                if (bundle.getLink(IBaseBundle.LINK_NEXT) != null) {
+                    final Bundle currentPage = bundle;
+                    nextPage = prefetcher.submit(new Callable<Bundle>() {
+                        public Bundle call() {
+                            return client
+                                    .loadPage()
+                                    .next(currentPage)
+                                    .execute();
+                        }
+                    });
+                }
 
                 // Only allows new patients to be added
-                for(Bundle.BundleEntryComponent entry: bundle.getEntry()) {
+                List<String> newPatients = new ArrayList<String>();
+                for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
                     Encounter encounter = (Encounter) entry.getResource();
-                    String patientURL = encounter.getSubject().getReference();
-                    patientList.add(patientURL.substring(8));
+                    String patientID = encounter.getSubject().getReferenceElement().getIdPart();
+                    if (patientID != null && seenPatients.add(patientID)) {
+                        newPatients.add(patientID);
+                    }
+                }
+                if (!newPatients.isEmpty()) {
+                    consumer.accept(newPatients);
                 }
 
-                // Loads next bundle
-                bundle = this.client
-                        .loadPage()
-                        .next(bundle)
-                        .execute();
-                encounterList.addAll(BundleUtil.toListOfResources(ctx, bundle));
+                bundle = nextPage == null ? null : nextPage.get();
             }
+            complete = true;
         }
         catch (Exception e) {
-            System.out.println("Done extracting patient list");
+            System.out.println("Could not load the next page of encounters: " + e.getMessage());
         }
-
-        // Remove repeated IDs
-        Set<String> newSet = new LinkedHashSet<String>(patientList);
-        patientList.clear();
-        patientList.addAll(newSet);
-        return patientList;
+        finally {
+            prefetcher.shutdownNow();
+        }
+        System.out.println("Done extracting patient list");
+        return complete;
     }
 
     /**
@@ -104,7 +153,7 @@ public class FHIRAPI {
      */
     public void setPractitionerID(String practitionerID) {
         // Calls to get practitioner's info
-        Practitioner practitioner = this.client.read().resource(Practitioner.class).withId(practitionerID).execute();
+        Practitioner practitioner = RESOURCE_CACHE.read(this.client, Practitioner.class, practitionerID);
 
         // Sets the respective values
         this.practitionerID = practitionerID;
@@ -121,54 +170,172 @@ public class FHIRAPI {
      */
     public String[] getPatientInfo(String patientID) {
         // Gets the patients information
-        Patient patient = this.client.read().resource(Patient.class).withId(patientID).execute();
+        Patient patient = RESOURCE_CACHE.read(this.client, Patient.class, patientID);
+        return parsePatientInfo(patientID, patient);
+    }
 
+    /**
+     * Retrieves the information of many patients, using one search per chunk of ids instead of one read per patient.
+     * @param patientIDs The ids of the patients.
+     * @return A map from each found patient id to the same String array returned by getPatientInfo.
+     */
+    public Map<String, String[]> getPatientInfoBatch(List<String> patientIDs) {
+        Map<String, String[]> patientInfo = new HashMap<String, String[]>();
+
+        for (int start = 0; start < patientIDs.size(); start += batchSize) {
+            List<String> chunk = patientIDs.subList(start, Math.min(start + batchSize, patientIDs.size()));
+
+            // Searches for all the patients of the chunk at once
+            Bundle bundle = this.client
+                    .search()
+                    .byUrl("Patient?_id=" + String.join(",", chunk) + "&_count=" + chunk.size())
+                    .returnBundle(Bundle.class)
+                    .execute();
+
+            while (true) {
+                for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+                    Patient patient = (Patient) entry.getResource();
+                    String id = patient.getIdElement().getIdPart();
+                    patientInfo.put(id, parsePatientInfo(id, patient));
+                }
+
+                // The server may still split the chunk into pages
+                if (bundle.getLink(IBaseBundle.LINK_NEXT) == null) {
+                    break;
+                }
+                bundle = this.client
+                        .loadPage()
+                        .next(bundle)
+                        .execute();
+            }
+        }
+
+        return patientInfo;
+    }
+
+    /**
+     * Registers a rest-hook subscription for the cholesterol and blood pressure observations of a patient. The server
+     * sends each new or changed observation to the endpoint as JSON.
+     * @param patientID The id of the patient.
+     * @param endpoint The url the server sends the notifications to.
+     * @return The id of the created subscription.
+     */
+    public String createObservationSubscription(String patientID, String endpoint) {
+        Subscription subscription = new Subscription();
+        subscription.setStatus(Subscription.SubscriptionStatus.REQUESTED);
+        subscription.setReason("Monitoring cholesterol and blood pressure of patient " + patientID);
+        subscription.setCriteria("Observation?patient=" + patientID + "&code=" + CHOLESTEROL_CODE + ","
+                + BLOOD_PRESSURE_CODE);
+        subscription.getChannel()
+                .setType(Subscription.SubscriptionChannelType.RESTHOOK)
+                .setEndpoint(endpoint)
+                .setPayload("application/fhir+json");
+
+        MethodOutcome outcome = this.client
+                .create()
+                .resource(subscription)
+                .execute();
+        return outcome.getId().getIdPart();
+    }
+
+    /**
+     * Deletes a subscription created by createObservationSubscription.
+     * @param subscriptionID The id of the subscription.
+     */
+    public void deleteSubscription(String subscriptionID) {
+        this.client
+                .delete()
+                .resourceById("Subscription", subscriptionID)
+                .execute();
+    }
+
+    /**
+     * Getter for the cache of practitioner and patient reads, used to check its hit, miss and not modified counters.
+     */
+    public ResourceCache getResourceCache() {
+        return RESOURCE_CACHE;
+    }
+
+    /**
+     * Setter for the amount of patients resolved per batch search.
+     * @param batchSize The amount of ids in each search, must be positive.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Getter for the amount of patients resolved per batch search.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Extracts the name, gender, address, birth date and the id out of a patient resource. Details missing from the
+     * resource are left blank, so that one incomplete patient does not fail the patients searched with it.
+     * @param patientID The id of the patient.
+     * @param patient The patient resource.
+     * @return Returns a String array containing the aforementioned information.
+     */
+    private String[] parsePatientInfo(String patientID, Patient patient) {
         // Stores the patients information into a 4 variable array, where 1st element is the id, then the name, then
         // the gender and finally the address.
         String id = patientID;
-        String name = patient.getName().get(0).getGivenAsSingleString() + " " + patient.getName().get(0).getFamily();
-        String gender = patient.getGender().getDisplay();
+        String name = "";
+        if (!patient.getName().isEmpty()) {
+            name = patient.getName().get(0).getGivenAsSingleString() + " " + patient.getName().get(0).getFamily();
+        }
+        String gender = patient.getGender() == null ? "" : patient.getGender().getDisplay();
+        String birthDate = "";
         Date date = patient.getBirthDate();
-        String birthDate = date.toString();
-        birthDate = birthDate.substring(0, 11) + birthDate.substring(25, 29);
-        String address = patient.getAddress().get(0).getLine().get(0) + ", " +
-                patient.getAddress().get(0).getCity() + ", " +
-                patient.getAddress().get(0).getState() + ", " +
-                patient.getAddress().get(0).getCountry();
+        if (date != null) {
+            // The year is taken from the end, as the length of the timezone name varies
+            birthDate = date.toString();
+            birthDate = birthDate.substring(0, 11) + birthDate.substring(birthDate.length() - 4);
+        }
+        String address = "";
+        if (!patient.getAddress().isEmpty()) {
+            Address patientAddress = patient.getAddress().get(0);
+            address = (patientAddress.getLine().isEmpty() ? "" : patientAddress.getLine().get(0)) + ", " +
+                    patientAddress.getCity() + ", " +
+                    patientAddress.getState() + ", " +
+                    patientAddress.getCountry();
+        }
         String[] returnString = {id, name, gender, birthDate, address};
         return returnString;
     }
 
     /**
-     * Gets the cholesterol level and the effective date time of a specific patient.
+     * Gets the cholesterol level and the effective date time of a specific patient. Once the patient has been searched
+     * before, only observations updated since then are returned.
      * @param patientID The id of the patient used.
-     * @return A String array containing the cholesterol and the date time.
+     * @return The observations with the latest new cholesterol reading, if any, or null if the search failed.
      */
-    public String[] getPatientCholesterol(String patientID) {
-        String effectiveDateTime = "";
-        String cholesterol = "";
+    public PatientObservations getPatientCholesterol(String patientID) {
+        ObservationsBuilder observations = new ObservationsBuilder(patientID);
 
-        // Searches for patients cholesterol details, returns the effective time and date as the first element of the
-        // array and the cholesterol level as the second element.
-        // Returns null if the cholesterol does not exist.
+        // Searches for patients cholesterol details, only the latest one is kept.
+        // Returns null if the search fails.
         try {
             Bundle bundle = this.client
                     .search()
-                    .byUrl("Observation?patient=" + patientID + "&code=2093-3&_sort=-date&_count=13")
+                    .byUrl("Observation?patient=" + patientID + "&code=2093-3&_sort=-date&_count=13"
+                            + lastUpdatedFilter(Collections.singletonList(patientID), CHOLESTEROL_CODE))
                     .returnBundle(Bundle.class)
                     .execute();
 
             for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
                 Observation observation = (Observation) entry.getResource();
-                DateTimeType dateTime = (DateTimeType) observation.getEffective();
-                effectiveDateTime = dateTime.getValueAsString();
-                Quantity quantity = (Quantity) observation.getValue();
-                cholesterol =quantity.getValue() + "";
-                break;
+                advanceWatermark(patientID, CHOLESTEROL_CODE, observation.getMeta().getLastUpdated());
+                observations.addCholesterol(observation);
             }
+            advanceWatermark(patientID, CHOLESTEROL_CODE, bundle.getMeta().getLastUpdated());
 
-            String[] returnString = {cholesterol, effectiveDateTime};
-            return returnString;
+            return observations.build();
         }
         catch (Exception e) {
             return null;
@@ -176,48 +343,349 @@ public class FHIRAPI {
     }
 
     /**
-     * Gets the blood pressure levels and the effective date time of a specific patient.
+     * Gets the blood pressure levels and the effective date time of a specific patient. Once the patient has been
+     * searched before, only observations updated since then are returned.
      * @param patientID The id of the patient used.
-     * @return Structure of return string array is 3 rows and 5 columns, where each row is the specific values
-     * (diastolic, systolic and date) and each column is each blood pressure reading.
+     * @return The observations with the latest new blood pressure readings, or null if the search failed.
      */
-    public String[][] getPatientBloodPressure(String patientID) {
-        ArrayList<String> date = new ArrayList();
-        ArrayList<String> bloodPressureDiastolic = new ArrayList();
-        ArrayList<String> bloodPressureSystolic = new ArrayList();
-        /* Structure of return string array is 3 rows and 5 columns, where each row is the specific values (diastolic,
-            systolic and date) and each column is each blood pressure reading. */
-        String[][] returnString = new String[3][5];
-
+    public PatientObservations getPatientBloodPressure(String patientID) {
+        ObservationsBuilder observations = new ObservationsBuilder(patientID);
 
-        // It looks through each bundle, finds each values and inserts them into the respective arraylists. then merges
-        // them into the final return string array.
+        // It looks through the bundle and keeps each blood pressure reading, from latest to oldest.
         try {
             Bundle bundle = this.client
                     .search()
-                    .byUrl("Observation?patient=" + patientID + "&code=55284-4&_sort=-date&_count=5")
+                    .byUrl("Observation?patient=" + patientID + "&code=55284-4&_sort=-date&_count=5"
+                            + lastUpdatedFilter(Collections.singletonList(patientID), BLOOD_PRESSURE_CODE))
                     .returnBundle(Bundle.class)
                     .execute();
 
             for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
                 Observation observation = (Observation) entry.getResource();
-                DateTimeType dateTime = (DateTimeType) observation.getEffective();
-                date.add(dateTime.getValueAsString());
-                String diastolic = observation.getComponent().get(0).getValueQuantity().getValue() + "";
-                bloodPressureDiastolic.add(diastolic);
-                String systolic = observation.getComponent().get(1).getValueQuantity().getValue() + "";
-                bloodPressureSystolic.add(systolic);
+                advanceWatermark(patientID, BLOOD_PRESSURE_CODE, observation.getMeta().getLastUpdated());
+                observations.addBloodPressure(observation);
             }
-
-            for (int i = 0; i < date.size(); i++) {
-                returnString[0][i] = bloodPressureDiastolic.get(i);
-                returnString[1][i] = bloodPressureSystolic.get(i);
-                returnString[2][i] = date.get(i);
-            }
-            return returnString;
+            advanceWatermark(patientID, BLOOD_PRESSURE_CODE, bundle.getMeta().getLastUpdated());
+            return observations.build();
         }
         catch (Exception e) {
             return null;
         }
     }
+
+    /**
+     * Gets the latest cholesterol and blood pressure observations of many patients. Each chunk of patients is fetched
+     * with one search per code sorted by date, which is then split back into each patient's readings. Patients that
+     * have been searched before only get the observations updated since then.
+     * @param patientIDs The ids of the patients.
+     * @return A map from patient id to its observations. Chunks that could not be retrieved are left out.
+     */
+    public Map<String, PatientObservations> getObservationsBatch(List<String> patientIDs) {
+        Map<String, PatientObservations> observations = new HashMap<String, PatientObservations>();
+
+        for (int start = 0; start < patientIDs.size(); start += batchSize) {
+            List<String> chunk = patientIDs.subList(start, Math.min(start + batchSize, patientIDs.size()));
+            try {
+                observations.putAll(getObservationsChunk(chunk));
+            }
+            catch (Exception e) {
+                System.out.println("Could not retrieve observations for " + chunk.size() + " patients");
+            }
+        }
+
+        return observations;
+    }
+
+    /**
+     * Performs the bulk observation searches for a single chunk of patients. The codes are searched separately, so a
+     * patient without any cholesterol does not keep the blood pressure search paging, and the other way around.
+     * @param patientIDs The ids of the patients in the chunk.
+     * @return A map from patient id to its observations.
+     */
+    private Map<String, PatientObservations> getObservationsChunk(List<String> patientIDs) {
+        // Readings per patient, newest first as the searches are sorted by date
+        Map<String, ObservationsBuilder> readings = new HashMap<String, ObservationsBuilder>();
+        for (String patientID : patientIDs) {
+            readings.put(patientID, new ObservationsBuilder(patientID));
+        }
+
+        // The watermarks are only advanced once both searches have succeeded, otherwise a failed chunk would hide the
+        // readings of the other search until the end of the session
+        Map<String, Date> watermarkUpdates = new HashMap<String, Date>();
+        searchChunk(patientIDs, CHOLESTEROL_CODE, readings, watermarkUpdates, MAX_OBSERVATION_PAGES);
+        searchChunk(patientIDs, BLOOD_PRESSURE_CODE, readings, watermarkUpdates, MAX_OBSERVATION_PAGES);
+        for (Map.Entry<String, Date> update : watermarkUpdates.entrySet()) {
+            advanceWatermark(update.getKey(), update.getValue());
+        }
+
+        Map<String, PatientObservations> observations = new HashMap<String, PatientObservations>();
+        for (String patientID : patientIDs) {
+            observations.put(patientID, readings.get(patientID).build());
+        }
+        return observations;
+    }
+
+    /**
+     * Searches the observations of one code for a chunk of patients and adds them to the readings of each patient.
+     * Paging stops once every patient has all its readings of the code, or after the given amount of pages. The
+     * patients still missing readings when paging stops early are then searched one by one, so that none of their
+     * history is skipped.
+     * @param patientIDs The ids of the patients in the chunk.
+     * @param code The observation code.
+     * @param readings The readings of each patient in the chunk.
+     * @param watermarkUpdates Receives the new watermark of each patient and code, which the caller advances.
+     * @param maxPages The most pages read before the remaining patients are searched one by one.
+     */
+    private void searchChunk(List<String> patientIDs, String code, Map<String, ObservationsBuilder> readings,
+                             Map<String, Date> watermarkUpdates, int maxPages) {
+        int patientsRemaining = patientIDs.size();
+
+        // Newest update seen per patient, only kept for the patients whose readings were all seen
+        Map<String, Date> newestUpdates = new HashMap<String, Date>();
+        boolean allPages = false;
+
+        Bundle bundle = this.client
+                .search()
+                .byUrl("Observation?patient=" + String.join(",", patientIDs) + "&code=" + code
+                        + "&_sort=-date&_count=" + OBSERVATION_PAGE_SIZE + lastUpdatedFilter(patientIDs, code))
+                .returnBundle(Bundle.class)
+                .execute();
+        Date searched = bundle.getMeta().getLastUpdated();
+        int pages = 1;
+
+        while (true) {
+            for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+                Observation observation = (Observation) entry.getResource();
+                String patientID = observation.getSubject().getReferenceElement().getIdPart();
+                ObservationsBuilder patientReadings = readings.get(patientID);
+                if (patientReadings == null) {
+                    continue;
+                }
+                Date lastUpdated = observation.getMeta().getLastUpdated();
+                String key = watermarkKey(patientID, code);
+                recordUpdate(newestUpdates, key, lastUpdated);
+
+                // The filter of the chunk may return readings this patient has already seen
+                if (!isNewerThanWatermark(key, lastUpdated)) {
+                    continue;
+                }
+                boolean wasComplete = patientReadings.isComplete(code);
+                if (code.equals(CHOLESTEROL_CODE)) {
+                    patientReadings.addCholesterol(observation);
+                } else {
+                    patientReadings.addBloodPressure(observation);
+                }
+                if (!wasComplete && patientReadings.isComplete(code)) {
+                    patientsRemaining--;
+                }
+            }
+
+            // Stop paging once every patient has all of its readings
+            if (patientsRemaining == 0 || bundle.getLink(IBaseBundle.LINK_NEXT) == null) {
+                allPages = true;
+                break;
+            }
+            if (pages == maxPages) {
+                System.out.println("Stopped searching " + code + " observations of " + patientIDs.size()
+                        + " patients after " + pages + " pages, searching " + patientsRemaining + " one by one");
+                break;
+            }
+            bundle = this.client
+                    .loadPage()
+                    .next(bundle)
+                    .execute();
+            pages++;
+        }
+
+        List<String> unfinished = new ArrayList<String>();
+        for (String patientID : patientIDs) {
+            String key = watermarkKey(patientID, code);
+            if (allPages || readings.get(patientID).isComplete(code)) {
+                // Everything up to the time of the search has now been seen
+                recordUpdate(watermarkUpdates, key, newestUpdates.get(key));
+                recordUpdate(watermarkUpdates, key, searched);
+            } else {
+                unfinished.add(patientID);
+            }
+        }
+
+        // The readings found so far are searched again along with the rest of the patient's history
+        for (String patientID : unfinished) {
+            readings.get(patientID).clear(code);
+            searchChunk(Collections.singletonList(patientID), code, readings, watermarkUpdates, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Records a watermark to be advanced later, keeping the latest one of each key.
+     */
+    private static void recordUpdate(Map<String, Date> watermarkUpdates, String key, Date lastUpdated) {
+        Date recorded = watermarkUpdates.get(key);
+        if (lastUpdated != null && (recorded == null || lastUpdated.after(recorded))) {
+            watermarkUpdates.put(key, lastUpdated);
+        }
+    }
+
+    /**
+     * Creates the _lastUpdated search parameter for the given patients and codes. The oldest watermark is used, so
+     * nothing any of the patients has not seen yet is left out. No filter is used if any patient has no watermark.
+     * @param patientIDs The ids of the patients in the search.
+     * @param codes The observation codes in the search.
+     * @return The search parameter, or an empty string if every observation must be returned.
+     */
+    private String lastUpdatedFilter(List<String> patientIDs, String... codes) {
+        Date oldest = null;
+        for (String patientID : patientIDs) {
+            for (String code : codes) {
+                Date watermark = watermarks.get(watermarkKey(patientID, code));
+                if (watermark == null) {
+                    return "";
+                }
+                if (oldest == null || watermark.before(oldest)) {
+                    oldest = watermark;
+                }
+            }
+        }
+        if (oldest == null) {
+            return "";
+        }
+
+        // Zulu time so that the timezone offset does not need to be url encoded
+        InstantType instant = new InstantType(oldest);
+        instant.setTimeZoneZulu(true);
+        return "&_lastUpdated=gt" + instant.getValueAsString();
+    }
+
+    /**
+     * Moves the watermark of a patient and code forward, it is never moved backwards.
+     * @param patientID The id of the patient.
+     * @param code The observation code.
+     * @param lastUpdated The last updated time of a seen observation or search, ignored if null.
+     */
+    private void advanceWatermark(String patientID, String code, Date lastUpdated) {
+        advanceWatermark(watermarkKey(patientID, code), lastUpdated);
+    }
+
+    /**
+     * Moves a watermark forward, it is never moved backwards. The loader, the refreshes and the push updates may
+     * advance the same watermark at once, so the comparison and the update are done atomically.
+     */
+    private void advanceWatermark(String key, Date lastUpdated) {
+        if (lastUpdated == null) {
+            return;
+        }
+        watermarks.merge(key, lastUpdated, LATER);
+    }
+
+    /**
+     * Checks whether an observation was updated after the watermark of its patient and code.
+     */
+    private boolean isNewerThanWatermark(String key, Date lastUpdated) {
+        Date watermark = watermarks.get(key);
+        return watermark == null || lastUpdated == null || lastUpdated.after(watermark);
+    }
+
+    /**
+     * Creates the key used to store the watermark of a patient and code.
+     */
+    private String watermarkKey(String patientID, String code) {
+        return patientID + "|" + code;
+    }
+
+    /**
+     * Collects the readings of a patient from observations sorted from latest to oldest. Values are read straight out
+     * of the observations, without going through strings.
+     */
+    private static class ObservationsBuilder {
+        private final String patientID;
+        private boolean hasCholesterol;
+        private float cholesterol;
+        private long cholesterolTime;
+        private int bloodPressureCount;
+        private final float[] diastolic = new float[PatientObservations.BLOOD_PRESSURE_READINGS];
+        private final float[] systolic = new float[PatientObservations.BLOOD_PRESSURE_READINGS];
+        private final long[] bloodPressureTime = new long[PatientObservations.BLOOD_PRESSURE_READINGS];
+
+        private ObservationsBuilder(String patientID) {
+            this.patientID = patientID;
+        }
+
+        /**
+         * Keeps the cholesterol of the observation if it is the first one seen. Observations without a quantity or
+         * a date time are skipped, so that they do not fail the readings of the other patients.
+         */
+        private void addCholesterol(Observation observation) {
+            if (hasCholesterol) {
+                return;
+            }
+            if (!hasQuantity(observation.getValue()) || !hasDateTime(observation)) {
+                skip(observation, "no cholesterol quantity or date time");
+                return;
+            }
+            cholesterol = ((Quantity) observation.getValue()).getValue().floatValue();
+            cholesterolTime = ((DateTimeType) observation.getEffective()).getValue().getTime();
+            hasCholesterol = true;
+        }
+
+        /**
+         * Keeps the blood pressure of the observation while there is room, using the first component as the
+         * diastolic and the second as the systolic value. Observations without both quantities or a date time are
+         * skipped, so that they do not fail the readings of the other patients.
+         */
+        private void addBloodPressure(Observation observation) {
+            if (bloodPressureCount == PatientObservations.BLOOD_PRESSURE_READINGS) {
+                return;
+            }
+            List<Observation.ObservationComponentComponent> components = observation.getComponent();
+            if (components.size() < 2 || !hasQuantity(components.get(0).getValue())
+                    || !hasQuantity(components.get(1).getValue()) || !hasDateTime(observation)) {
+                skip(observation, "no blood pressure quantities or date time");
+                return;
+            }
+            diastolic[bloodPressureCount] = ((Quantity) components.get(0).getValue()).getValue().floatValue();
+            systolic[bloodPressureCount] = ((Quantity) components.get(1).getValue()).getValue().floatValue();
+            bloodPressureTime[bloodPressureCount] = ((DateTimeType) observation.getEffective()).getValue().getTime();
+            bloodPressureCount++;
+        }
+
+        private static boolean hasQuantity(Type value) {
+            return value instanceof Quantity && ((Quantity) value).getValue() != null;
+        }
+
+        private static boolean hasDateTime(Observation observation) {
+            return observation.getEffective() instanceof DateTimeType
+                    && ((DateTimeType) observation.getEffective()).getValue() != null;
+        }
+
+        private void skip(Observation observation, String reason) {
+            System.out.println("Skipped observation " + observation.getIdElement().getIdPart() + " of patient "
+                    + patientID + ": " + reason);
+        }
+
+        /**
+         * Forgets the readings of a code found so far.
+         */
+        private void clear(String code) {
+            if (code.equals(CHOLESTEROL_CODE)) {
+                hasCholesterol = false;
+            } else {
+                bloodPressureCount = 0;
+            }
+        }
+
+        /**
+         * Checks whether all the readings of a code needed for the patient have been found.
+         */
+        private boolean isComplete(String code) {
+            if (code.equals(CHOLESTEROL_CODE)) {
+                return hasCholesterol;
+            }
+            return bloodPressureCount == PatientObservations.BLOOD_PRESSURE_READINGS;
+        }
+
+        private PatientObservations build() {
+            return new PatientObservations(patientID, hasCholesterol, cholesterol, cholesterolTime,
+                    bloodPressureCount, diastolic, systolic, bloodPressureTime);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package Controller;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.api.ServerValidationModeEnum;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the clients used by the FHIRAPI class. The FHIR context is expensive to build, so a single context is shared
+ * by every client, together with a pooled HTTP connection manager that keeps connections alive between requests.
+ *
+ * The settings can be changed with the following system properties:
+ * fhir.server.url, fhir.pool.maxPerRoute, fhir.pool.maxTotal, fhir.keepAlive (ms), fhir.timeout.connect (ms) and
+ * fhir.timeout.socket (ms).
+ */
+public class FHIRClientFactory {
+    // Default settings
+    public static final String DEFAULT_URL = "https://fhir.monash.edu/hapi-fhir-jpaserver/fhir/";
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final int DEFAULT_MAX_TOTAL = 40;
+    public static final int DEFAULT_KEEP_ALIVE = 30000;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+
+    // Revalidating cache of practitioner and patient reads shared by every client
+    private static final ResourceCache RESOURCE_CACHE = new ResourceCache();
+
+    private FHIRClientFactory() {}
+
+    /**
+     * Holds the shared context, so that it is only built the first time it is used.
+     */
+    private static class ContextHolder {
+        private static final FhirContext CONTEXT = createContext();
+    }
+
+    /**
+     * Getter for the shared FHIR context.
+     */
+    public static FhirContext getContext() {
+        return ContextHolder.CONTEXT;
+    }
+
+    /**
+     * Getter for the base url of the FHIR server.
+     */
+    public static String getServerURL() {
+        return System.getProperty("fhir.server.url", DEFAULT_URL);
+    }
+
+    /**
+     * Creates a new client for the FHIR server. Clients are cheap, they all use the shared context and connection pool.
+     * @return A new client.
+     */
+    public static IGenericClient newClient() {
+        return getContext().newRestfulGenericClient(getServerURL());
+    }
+
+    /**
+     * Getter for the cache of practitioner and patient reads.
+     */
+    public static ResourceCache getResourceCache() {
+        return RESOURCE_CACHE;
+    }
+
+    /**
+     * Builds the context and sets up its pooled HTTP client.
+     */
+    private static FhirContext createContext() {
+        long start = System.currentTimeMillis();
+        FhirContext ctx = FhirContext.forR4();
+
+        final int maxPerRoute = Integer.getInteger("fhir.pool.maxPerRoute", DEFAULT_MAX_PER_ROUTE);
+        final int maxTotal = Integer.getInteger("fhir.pool.maxTotal", DEFAULT_MAX_TOTAL);
+        final int keepAlive = Integer.getInteger("fhir.keepAlive", DEFAULT_KEEP_ALIVE);
+        final int connectTimeout = Integer.getInteger("fhir.timeout.connect", DEFAULT_CONNECT_TIMEOUT);
+        final int socketTimeout = Integer.getInteger("fhir.timeout.socket", DEFAULT_SOCKET_TIMEOUT);
+
+        // Pooled connections are reused, so TCP and TLS are only set up once per connection. They have no time to live,
+        // a connection in use is kept for as long as it keeps being reused
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setMaxTotal(maxTotal);
+
+        // Keeps idle connections for as long as the server allows, up to the configured keep alive
+        ConnectionKeepAliveStrategy keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+            }
+        };
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(socketTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                // Closes connections left idle for longer than the keep alive, before the server drops them
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .build();
+        ctx.getRestfulClientFactory().setHttpClient(httpClient);
+
+        // Skips fetching the server's capability statement before the first request
+        ctx.getRestfulClientFactory().setServerValidationMode(ServerValidationModeEnum.NEVER);
+
+        System.out.println("Created FHIR context in " + (System.currentTimeMillis() - start) + " ms");
+        return ctx;
+    }
+}
@@ -2,15 +2,24 @@ package Controller;
 
 import Model.AppPatient;
 import Model.AppPractitioner;
+import Model.PatientListListener;
 import View.DashboardGUI;
 import View.LoginGUI;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * This class controls the flow of the program by responding to the user's interactions.
@@ -26,8 +35,11 @@ public class MainController {
     // API class
     private final FHIRAPI API;
 
-    // Timer
-    public ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+    // Timer, created on the first refresh rate
+    private RefreshScheduler refreshScheduler;
+
+    // Optional push mode, null unless it is enabled
+    private PushUpdater pushUpdater;
 
     /**
      * The constructor. Here it initially instantiates the login class and the API.
@@ -42,47 +54,128 @@ public class MainController {
     }
 
     /**
-     * This listener class implements the login controller functionality.
+     * This listener class implements the login controller functionality. The practitioner is verified and created on a
+     * background thread, so that the window keeps responding while the server is contacted.
      */
     class LoginListener implements ActionListener {
-        public void actionPerformed(ActionEvent e) {
-            String id = LOGIN.getPractitionerIDText();
+        private boolean loggingIn = false;
 
-            LOGIN.changeLoginFeedback(true); // Give users feedback
+        public void actionPerformed(ActionEvent e) {
+            // Ignore repeated clicks while the previous login is still running
+            if (loggingIn) {
+                return;
+            }
+            loggingIn = true;
 
-            // Search for specific practitioner's identifier
-            boolean loginSuccessful = API.verifyPractitioner(id);
+            final String id = LOGIN.getPractitionerIDText();
 
-            // Returns true if practitioner exists
-            if (loginSuccessful) {
-                // Remove components
-                LOGIN.removeLoginPanelFromFrame();
+            LOGIN.changeLoginFeedback(true); // Give users feedback
 
-                // Create practitioner to pass into View.DashboardGUI constructor
-                practitioner = new AppPractitioner(id);
+            new SwingWorker<AppPractitioner, Void>() {
+                @Override
+                protected AppPractitioner doInBackground() {
+                    // Search for specific practitioner's identifier
+                    boolean loginSuccessful = API.verifyPractitioner(id);
 
-                // Move to home panel
-                dashboard = new DashboardGUI(APPFRAME, practitioner);
+                    // Create practitioner to pass into View.DashboardGUI constructor
+                    return loginSuccessful ? new AppPractitioner(id) : null;
+                }
 
-                dashboard.addCholesterolSwitchListener(new CholesterolSwitchListener());
-                dashboard.addBloodPressureSwitchListener(new BloodPressureSwitchListener());
-                dashboard.addSystolicSetterListener(new SystolicListener());
-                dashboard.addDiastolicSetterListener(new DiastolicSetterListener());
+                @Override
+                protected void done() {
+                    loggingIn = false;
+                    AppPractitioner loggedIn;
+                    try {
+                        loggedIn = get();
+                    } catch (Exception exception) {
+                        System.out.println("Could not log in: " + exception.getMessage());
+                        loggedIn = null;
+                    }
+
+                    // Returns a practitioner if practitioner exists
+                    if (loggedIn != null) {
+                        showDashboard(loggedIn);
+                    } else {
+                        LOGIN.changeLoginFeedback(false);
+                    }
+                    System.out.println("Logging in.");
+                }
+            }.execute();
+        }
+    }
 
-                // Listeners for all patients panel
-                dashboard.allPatientsPanel.addPatientAddingListener(new PatientAddingListener());
-                dashboard.allPatientsPanel.addPatientRemovingListener(new PatientRemovingListener());
+    /**
+     * Replaces the login with the dashboard of the practitioner and starts loading its patients.
+     * @param loggedIn The practitioner that logged in.
+     */
+    private void showDashboard(AppPractitioner loggedIn) {
+        practitioner = loggedIn;
+
+        // Remove components
+        LOGIN.removeLoginPanelFromFrame();
+
+        // Move to home panel
+        dashboard = new DashboardGUI(APPFRAME, practitioner);
+
+        dashboard.addCholesterolSwitchListener(new CholesterolSwitchListener());
+        dashboard.addBloodPressureSwitchListener(new BloodPressureSwitchListener());
+        dashboard.addSystolicSetterListener(new SystolicListener());
+        dashboard.addDiastolicSetterListener(new DiastolicSetterListener());
+        dashboard.addMonitorFilterListener(new MonitorFilterListener());
+
+        // Listeners for all patients panel
+        dashboard.allPatientsPanel.addPatientAddingListener(new PatientAddingListener());
+        dashboard.allPatientsPanel.addPatientRemovingListener(new PatientRemovingListener());
+        PatientSearchListener patientSearchListener = new PatientSearchListener();
+        dashboard.allPatientsPanel.addPatientSearchListener(patientSearchListener);
+        practitioner.addPatientListListener(patientSearchListener);
+
+        // Listeners for patient details panel
+        dashboard.patientDetailsPane.addRefreshListener(new RefreshListener());
+
+        // Load the patients from the server, publishing them on the Swing thread as they arrive
+        practitioner.loadInBackground(new Executor() {
+            public void execute(Runnable command) {
+                SwingUtilities.invokeLater(command);
+            }
+        });
 
-                // Listeners for patient details panel
-                dashboard.patientDetailsPane.addRefreshListener(new RefreshListener());
+        if (PushUpdater.isEnabled()) {
+            startPushUpdates();
+        }
+    }
 
-            } else {
-                LOGIN.changeLoginFeedback(false);
-            }
-            System.out.println("Logging in.");
+    /**
+     * Starts the push mode, which refreshes a monitored patient as soon as the server notifies a new observation.
+     */
+    private void startPushUpdates() {
+        try {
+            pushUpdater = new PushUpdater(practitioner, new Consumer<Map<String, PatientObservations>>() {
+                public void accept(final Map<String, PatientObservations> observations) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            showObservations(observations);
+                        }
+                    });
+                }
+            });
+            pushUpdater.start();
+        } catch (IOException exception) {
+            System.out.println("Could not start push mode: " + exception.getMessage());
+            pushUpdater = null;
         }
     }
 
+    /**
+     * Applies retrieved observations and updates the dashboard. Must be called on the Swing thread.
+     * @param observations The observations by patient id.
+     */
+    private void showObservations(Map<String, PatientObservations> observations) {
+        practitioner.applyObservations(observations);
+        dashboard.refreshChangedPatients();
+        dashboard.refreshBloodPressureText();
+    }
+
     /**
      * This listener class implements the refresh controller functionality.
      */
@@ -95,15 +188,11 @@ public class MainController {
                     dashboard.patientDetailsPane.setRefreshRateFeedback("New refresh rate: " + refreshRate + " seconds.");
                     System.out.println("New refresh: " + refreshRate + " seconds.");
 
-                    Runnable runnable = new Runnable() {
-                        public void run() {
-                            practitioner.notifyObserver();
-                            dashboard.refreshMonitorTableModel();
-                            dashboard.updateBloodPressureText(practitioner.createBloodPressureDetails());
-                        }
-                    };
-
-                    executor.scheduleAtFixedRate(runnable, 0, refreshRate, TimeUnit.SECONDS);
+                    // Replaces the previous refresh rate instead of adding another refresh
+                    if (refreshScheduler == null) {
+                        refreshScheduler = new RefreshScheduler(new RefreshTask());
+                    }
+                    refreshScheduler.setRate(refreshRate, TimeUnit.SECONDS);
 
                 } else {
                     dashboard.patientDetailsPane.setRefreshRateFeedback("Enter a positive integer.");
@@ -117,6 +206,55 @@ public class MainController {
         }
     }
 
+    /**
+     * Refreshes the monitored patients. The observations are retrieved on the scheduler thread, and only the finished
+     * observations are handed to the Swing thread, which applies them and updates the dashboard. The refresh waits for
+     * the Swing thread, so the scheduler times the whole cycle. If the observations of some patients could not be
+     * retrieved the refresh fails after showing the rest, so the scheduler backs off.
+     */
+    class RefreshTask implements Runnable {
+        public void run() {
+            // The monitored patients are only read on the Swing thread, and only the due ones are polled
+            List<String> patientIDs = onSwingThread(new Callable<List<String>>() {
+                public List<String> call() {
+                    return practitioner.getDuePatientIDs();
+                }
+            });
+
+            final Map<String, PatientObservations> observations = practitioner.fetchObservations(patientIDs);
+
+            onSwingThread(new Callable<Void>() {
+                public Void call() {
+                    showObservations(observations);
+                    return null;
+                }
+            });
+
+            if (observations.size() < patientIDs.size()) {
+                throw new IllegalStateException("Could not retrieve observations for "
+                        + (patientIDs.size() - observations.size()) + " patients");
+            }
+        }
+    }
+
+    /**
+     * Runs a call on the Swing thread and waits for its result.
+     * @param call The call to be run.
+     * @return The result of the call.
+     */
+    private static <T> T onSwingThread(Callable<T> call) {
+        FutureTask<T> task = new FutureTask<T>(call);
+        SwingUtilities.invokeLater(task);
+        try {
+            return task.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the Swing thread", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException(exception.getCause());
+        }
+    }
+
     /**
      * This listener class implements the patient adding to cholesterol list controller functionality.
      */
@@ -127,6 +265,9 @@ public class MainController {
                 int selectedPatientIndex = dashboard.allPatientsPanel.getSelectedRowInAllPatientsTable();
                 AppPatient patient = practitioner.getPatientFromAllPatientsList(selectedPatientIndex);
                 if (dashboard.addPatientToMonitorTable(patient)) {
+                    if (pushUpdater != null) {
+                        pushUpdater.subscribe(patient);
+                    }
                     System.out.println("Added new patient.");
                 } else {
                     System.out.println("Patient already added.");
@@ -148,6 +289,9 @@ public class MainController {
                 AppPatient patient = practitioner.getPatientFromAllPatientsList(selectedPatientIndex);
 
                 if (dashboard.removePatientFromMonitorTable(patient)) {
+                    if (pushUpdater != null) {
+                        pushUpdater.unsubscribe(patient);
+                    }
                     System.out.println("Patient removed.");
                 } else {
                     System.out.println("Patient not found in table.");
@@ -158,6 +302,52 @@ public class MainController {
         }
     }
 
+    /**
+     * This listener class implements the patient search controller functionality. The all patients table is filtered
+     * on every keystroke, and searched again while patients are still being loaded so that new matches show up.
+     */
+    class PatientSearchListener implements DocumentListener, PatientListListener {
+        public void insertUpdate(DocumentEvent e) {
+            search();
+        }
+
+        public void removeUpdate(DocumentEvent e) {
+            search();
+        }
+
+        public void changedUpdate(DocumentEvent e) {
+            search();
+        }
+
+        public void patientsAdded(int firstIndex, int lastIndex) {
+            search();
+        }
+
+        public void patientsUpdated(int firstIndex, int lastIndex) {
+            search();
+        }
+
+        private void search() {
+            String query = dashboard.allPatientsPanel.getSearchText();
+            if (query.trim().isEmpty()) {
+                dashboard.allPatientsPanel.showAllPatients();
+            } else {
+                dashboard.allPatientsPanel.showMatchingPatients(practitioner.searchPatients(query));
+            }
+        }
+    }
+
+    /**
+     * This listener class implements the monitor filter controller functionality.
+     */
+    class MonitorFilterListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            // Show only the patients with high readings of the chosen kind
+            dashboard.setMonitorFilter(dashboard.getSelectedMonitorFilter());
+            System.out.println("Monitor filter changed.");
+        }
+    }
+
     /**
      * This listener class implements the cholesterol switch controller functionality.
      */
@@ -0,0 +1,105 @@
+package Controller;
+
+/**
+ * The latest cholesterol and blood pressure observations of a single patient, as returned by the observation searches
+ * of the FHIRAPI class. Values are kept as primitives and date times as epoch milliseconds, so they only need to be
+ * formatted when they are displayed.
+ */
+public class PatientObservations {
+    public static final int BLOOD_PRESSURE_READINGS = 5;
+
+    private final String patientID;
+
+    // Cholesterol, only valid if hasCholesterol is set
+    private final boolean hasCholesterol;
+    private final float cholesterol;
+    private final long cholesterolTime;
+
+    // Blood pressure readings from latest to oldest, only the first bloodPressureCount are valid
+    private final int bloodPressureCount;
+    private final float[] diastolic;
+    private final float[] systolic;
+    private final long[] bloodPressureTime;
+
+    /**
+     * Creates the observations of a patient.
+     * @param patientID The id of the patient.
+     * @param hasCholesterol Whether there is a cholesterol reading.
+     * @param cholesterol The cholesterol level.
+     * @param cholesterolTime The effective date time of the cholesterol level in epoch milliseconds.
+     * @param bloodPressureCount The amount of blood pressure readings.
+     * @param diastolic The diastolic blood pressures from latest to oldest.
+     * @param systolic The systolic blood pressures from latest to oldest.
+     * @param bloodPressureTime The effective date times of the blood pressures in epoch milliseconds.
+     */
+    public PatientObservations(String patientID, boolean hasCholesterol, float cholesterol, long cholesterolTime,
+                               int bloodPressureCount, float[] diastolic, float[] systolic, long[] bloodPressureTime) {
+        this.patientID = patientID;
+        this.hasCholesterol = hasCholesterol;
+        this.cholesterol = cholesterol;
+        this.cholesterolTime = cholesterolTime;
+        this.bloodPressureCount = bloodPressureCount;
+        this.diastolic = diastolic.clone();
+        this.systolic = systolic.clone();
+        this.bloodPressureTime = bloodPressureTime.clone();
+    }
+
+    /**
+     * Getter for the patient id.
+     */
+    public String getPatientID() {
+        return patientID;
+    }
+
+    /**
+     * Whether the observations contain a cholesterol reading.
+     */
+    public boolean hasCholesterol() {
+        return hasCholesterol;
+    }
+
+    /**
+     * Getter for the cholesterol level.
+     */
+    public float getCholesterol() {
+        return cholesterol;
+    }
+
+    /**
+     * Getter for the effective date time of the cholesterol level in epoch milliseconds.
+     */
+    public long getCholesterolTime() {
+        return cholesterolTime;
+    }
+
+    /**
+     * Getter for the amount of blood pressure readings.
+     */
+    public int getBloodPressureCount() {
+        return bloodPressureCount;
+    }
+
+    /**
+     * Getter for a diastolic blood pressure.
+     * @param reading The reading, where 0 is the latest.
+     */
+    public float getDiastolic(int reading) {
+        return diastolic[reading];
+    }
+
+    /**
+     * Getter for a systolic blood pressure.
+     * @param reading The reading, where 0 is the latest.
+     */
+    public float getSystolic(int reading) {
+        return systolic[reading];
+    }
+
+    /**
+     * Getter for the effective date time of a blood pressure reading in epoch milliseconds.
+     * @param reading The reading, where 0 is the latest.
+     */
+    public long getBloodPressureTime(int reading) {
+        return bloodPressureTime[reading];
+    }
+}
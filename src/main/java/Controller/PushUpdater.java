@@ -0,0 +1,193 @@
+package Controller;
+
+import Model.AppPatient;
+import Model.AppPractitioner;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * The optional push mode. Every monitored patient gets a FHIR subscription for its cholesterol and blood pressure
+ * observations, and the server notifies a local SubscriptionServer as soon as one is created, so the patient is
+ * refreshed straight away instead of on the next poll. The timed refresh keeps working next to it.
+ *
+ * The push mode is enabled with the fhir.push.enabled system property. The local port is set with fhir.push.port, and
+ * fhir.push.endpoint sets the url the FHIR server should use when it cannot reach this machine as localhost.
+ */
+public class PushUpdater implements SubscriptionServer.NotificationListener {
+    private final AppPractitioner practitioner;
+    private final Consumer<Map<String, PatientObservations>> publisher;
+    private final FHIRAPI api;
+    private final SubscriptionServer server;
+    private final String endpoint;
+
+    // Subscription calls and observation searches run one at a time, off the Swing thread
+    private final ExecutorService worker;
+
+    // Subscription id by patient id
+    private final Map<String, String> subscriptions;
+
+    // Patients already waiting to be refreshed, so a burst of notifications only refreshes them once
+    private final Set<String> pending;
+
+    /**
+     * Whether the push mode has been enabled.
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("fhir.push.enabled");
+    }
+
+    /**
+     * Creates the push mode of a practitioner, it only receives notifications once it is started.
+     * @param practitioner The practitioner whose monitored patients are refreshed.
+     * @param publisher Applies the retrieved observations on the Swing thread.
+     * @throws IOException If the local endpoint could not be opened.
+     */
+    public PushUpdater(AppPractitioner practitioner, Consumer<Map<String, PatientObservations>> publisher)
+            throws IOException {
+        this.practitioner = practitioner;
+        this.publisher = publisher;
+        this.api = new FHIRAPI();
+        this.server = new SubscriptionServer(Integer.getInteger("fhir.push.port", 0), this);
+        this.endpoint = System.getProperty("fhir.push.endpoint", server.getLocalURL());
+        this.worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "push-updates");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.subscriptions = new ConcurrentHashMap<String, String>();
+        this.pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Starts receiving notifications. The subscriptions are deleted again when the application exits.
+     */
+    public void start() {
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                stop();
+            }
+        }, "push-shutdown"));
+    }
+
+    /**
+     * Stops receiving notifications and deletes all the subscriptions.
+     */
+    public void stop() {
+        server.stop();
+        for (String patientID : new ArrayList<String>(subscriptions.keySet())) {
+            deleteSubscription(patientID);
+        }
+    }
+
+    /**
+     * Subscribes to the observations of a patient that started being monitored.
+     * @param patient The patient.
+     */
+    public void subscribe(AppPatient patient) {
+        final String patientID = patient.getId();
+        worker.execute(new Runnable() {
+            public void run() {
+                if (subscriptions.containsKey(patientID)) {
+                    return;
+                }
+                try {
+                    subscriptions.put(patientID, api.createObservationSubscription(patientID, endpoint));
+                    System.out.println("Subscribed to observations of patient " + patientID);
+                } catch (RuntimeException e) {
+                    System.out.println("Could not subscribe to patient " + patientID + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the subscription of a patient that stopped being monitored.
+     * @param patient The patient.
+     */
+    public void unsubscribe(AppPatient patient) {
+        final String patientID = patient.getId();
+        worker.execute(new Runnable() {
+            public void run() {
+                deleteSubscription(patientID);
+            }
+        });
+    }
+
+    /**
+     * Refreshes the patient of a notified observation.
+     * @param patientID The id of the patient.
+     */
+    public void observationNotified(String patientID) {
+        if (subscriptions.containsKey(patientID)) {
+            refresh(Collections.singletonList(patientID));
+        }
+    }
+
+    /**
+     * Refreshes every monitored patient, since the notification did not say which one changed.
+     */
+    public void unknownNotified() {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                refresh(practitioner.getMonitoredPatientIDs());
+            }
+        });
+    }
+
+    /**
+     * Retrieves the observations of some patients on the worker and publishes them.
+     * @param patientIDs The ids of the patients.
+     */
+    private void refresh(List<String> patientIDs) {
+        final List<String> refreshed = new ArrayList<String>();
+        for (String patientID : patientIDs) {
+            if (pending.add(patientID)) {
+                refreshed.add(patientID);
+            }
+        }
+        if (refreshed.isEmpty()) {
+            return;
+        }
+
+        worker.execute(new Runnable() {
+            public void run() {
+                pending.removeAll(refreshed);
+                try {
+                    publisher.accept(practitioner.fetchObservations(refreshed));
+                } catch (RuntimeException e) {
+                    System.out.println("Could not refresh notified patients: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the subscription of a patient, if there is one.
+     */
+    private void deleteSubscription(String patientID) {
+        String subscriptionID = subscriptions.remove(patientID);
+        if (subscriptionID == null) {
+            return;
+        }
+        try {
+            api.deleteSubscription(subscriptionID);
+            System.out.println("Unsubscribed from observations of patient " + patientID);
+        } catch (RuntimeException e) {
+            System.out.println("Could not delete subscription " + subscriptionID + ": " + e.getMessage());
+        }
+    }
+}
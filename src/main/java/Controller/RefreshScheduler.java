@@ -0,0 +1,162 @@
+package Controller;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a refresh once per interval on its own thread. There is only ever one scheduled refresh: each refresh schedules
+ * the next one when it finishes, and changing the rate replaces the scheduled refresh instead of adding another one.
+ * When a refresh fails or takes longer than the interval, the next one is delayed with an exponential backoff and a
+ * random jitter, so a slow server is not queued up with refreshes.
+ *
+ * The longest backoff can be changed with the fhir.refresh.maxBackoff system property (ms).
+ */
+public class RefreshScheduler {
+    // Default settings
+    public static final long DEFAULT_MAX_BACKOFF = 300000;
+    public static final double JITTER = 0.1;
+
+    private final Runnable refresh;
+    private final ScheduledExecutorService executor;
+    private final long maxBackoff;
+    private final Random random;
+
+    // Guarded by this
+    private ScheduledFuture<?> scheduled;
+    private long period;
+    private int generation;
+    private long lastStart;
+    private int backoffSteps;
+
+    /**
+     * Creates a stopped scheduler.
+     * @param refresh The refresh, which blocks until it is finished and throws a runtime exception if it failed.
+     */
+    public RefreshScheduler(Runnable refresh) {
+        this.refresh = refresh;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "refresh-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.maxBackoff = Long.getLong("fhir.refresh.maxBackoff", DEFAULT_MAX_BACKOFF);
+        this.random = new Random();
+    }
+
+    /**
+     * Sets the interval between refreshes and replaces the scheduled refresh. The first refresh with the new rate runs
+     * once the new interval has passed since the previous refresh started, or straight away if it already has.
+     * @param interval The interval between refreshes, must be positive.
+     * @param unit The unit of the interval.
+     */
+    public synchronized void setRate(long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        cancel();
+        period = unit.toMillis(interval);
+        backoffSteps = 0;
+
+        long delay = lastStart == 0 ? 0 : Math.max(0, lastStart + period - System.currentTimeMillis());
+        schedule(generation, delay);
+    }
+
+    /**
+     * Stops the refreshes. A refresh that is running is allowed to finish.
+     */
+    public synchronized void stop() {
+        cancel();
+    }
+
+    /**
+     * Getter for the interval between refreshes in milliseconds, 0 if the scheduler has not been started.
+     */
+    public synchronized long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Cancels the scheduled refresh, so that a refresh still running does not schedule another one either.
+     */
+    private void cancel() {
+        generation++;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /**
+     * Schedules the next refresh.
+     * @param tickGeneration The generation the refresh belongs to.
+     * @param delay The delay in milliseconds.
+     */
+    private void schedule(final int tickGeneration, long delay) {
+        scheduled = executor.schedule(new Runnable() {
+            public void run() {
+                tick(tickGeneration);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one refresh and schedules the next one.
+     * @param tickGeneration The generation the refresh belongs to, outdated refreshes do nothing.
+     */
+    private void tick(int tickGeneration) {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            // A single thread runs the refreshes and the next one is only scheduled once this one has finished, so
+            // refreshes never overlap
+            if (tickGeneration != generation) {
+                return;
+            }
+            lastStart = start;
+        }
+
+        boolean healthy;
+        try {
+            refresh.run();
+            healthy = System.currentTimeMillis() - start <= period;
+        } catch (RuntimeException exception) {
+            System.out.println("Refresh failed: " + exception.getMessage());
+            healthy = false;
+        }
+
+        synchronized (this) {
+            if (tickGeneration != generation) {
+                return;
+            }
+
+            long delay;
+            if (healthy) {
+                backoffSteps = 0;
+                delay = Math.max(0, start + period - System.currentTimeMillis());
+            } else {
+                backoffSteps++;
+                delay = backoffDelay();
+                System.out.println("Refresh failed or was slow, next refresh in " + delay + " ms");
+            }
+            schedule(tickGeneration, delay);
+        }
+    }
+
+    /**
+     * Calculates the delay after a failed or slow refresh, which doubles with every such refresh in a row.
+     * @return The delay in milliseconds.
+     */
+    private long backoffDelay() {
+        long delay = period;
+        for (int i = 0; i < backoffSteps && delay < maxBackoff; i++) {
+            delay *= 2;
+        }
+        delay = Math.max(period, Math.min(delay, maxBackoff));
+        return delay + (long) (random.nextDouble() * JITTER * delay);
+    }
+}
@@ -0,0 +1,121 @@
+package Controller;
+
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of read resources which is revalidated with the server instead of trusted blindly. Reads of a cached
+ * resource send its version id as an If-None-Match header, so when the server answers 304 Not Modified the cached
+ * resource is returned without downloading or parsing the body again. Only resources that were read are cached, and
+ * the least recently read ones are dropped once the cache is full.
+ */
+public class ResourceCache {
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Map<String, IBaseResource> resources;
+
+    // Counters used to verify the saving
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most fhir.cache.maxEntries resources.
+     */
+    public ResourceCache() {
+        this(Integer.getInteger("fhir.cache.maxEntries", DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Creates a cache holding at most the given amount of resources.
+     * @param maxEntries The amount of resources kept, must be positive.
+     */
+    public ResourceCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        // Ordered by access, so the eldest entry is the least recently read
+        resources = Collections.synchronizedMap(new LinkedHashMap<String, IBaseResource>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IBaseResource> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Reads a resource, revalidating the cached version if there is one.
+     * @param client The client used for the read.
+     * @param type The type of the resource.
+     * @param id The id of the resource.
+     * @return The current version of the resource.
+     */
+    public <T extends IBaseResource> T read(IGenericClient client, Class<T> type, String id) {
+        String key = key(type, id);
+        T cached = type.cast(resources.get(key));
+
+        // Without a version there is nothing to revalidate against
+        if (cached == null || cached.getMeta().getVersionId() == null) {
+            misses.incrementAndGet();
+            T resource = client.read().resource(type).withId(id).execute();
+            resources.put(key, resource);
+            return resource;
+        }
+
+        hits.incrementAndGet();
+        T resource = client
+                .read()
+                .resource(type)
+                .withId(id)
+                .ifVersionMatches(cached.getMeta().getVersionId())
+                .returnResource(cached)
+                .execute();
+
+        // The cached instance is only handed back when the server answered 304
+        if (resource == cached) {
+            notModified.incrementAndGet();
+        } else {
+            resources.put(key, resource);
+        }
+        return resource;
+    }
+
+    /**
+     * Getter for the amount of reads of a cached resource.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter for the amount of reads of a resource that was not cached.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter for the amount of reads the server answered with 304 Not Modified.
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Resource cache: " + resources.size() + " entries, " + getHits() + " hits, " + getMisses() + " misses, "
+                + getNotModified() + " not modified";
+    }
+
+    /**
+     * Creates the key of a resource.
+     */
+    private static String key(Class<?> type, String id) {
+        return type.getSimpleName() + "/" + id;
+    }
+}
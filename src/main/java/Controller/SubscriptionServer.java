@@ -0,0 +1,180 @@
+package Controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A small local HTTP endpoint that receives the rest-hook notifications of FHIR subscriptions. The server sends every
+ * matching observation to the endpoint, usually as a PUT of the observation under the endpoint path. The patients of
+ * the observations are handed to the listener; notifications without a readable observation are passed on as well, so
+ * that the listener can refresh every patient instead.
+ */
+public class SubscriptionServer {
+    public static final String PATH = "/fhir-notify";
+
+    /**
+     * Receives the notifications, on the thread of the endpoint.
+     */
+    public interface NotificationListener {
+        /**
+         * Called when an observation of a patient has been created or changed.
+         * @param patientID The id of the patient.
+         */
+        void observationNotified(String patientID);
+
+        /**
+         * Called when a notification did not contain an observation, so any patient may have changed.
+         */
+        void unknownNotified();
+    }
+
+    private final HttpServer server;
+    private final NotificationListener listener;
+
+    /**
+     * Creates the endpoint, it only accepts notifications once it is started.
+     * @param port The local port, 0 for any free port.
+     * @param listener Receives the notifications.
+     * @throws IOException If the port could not be opened.
+     */
+    public SubscriptionServer(int port, NotificationListener listener) throws IOException {
+        this.listener = listener;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    receive(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        this.server.setExecutor(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "subscription-server");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * Starts accepting notifications.
+     */
+    public void start() {
+        server.start();
+        System.out.println("Listening for subscription notifications on port " + getPort());
+    }
+
+    /**
+     * Stops accepting notifications.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Getter for the local port of the endpoint.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Getter for the url of the endpoint on this machine.
+     */
+    public String getLocalURL() {
+        return "http://localhost:" + getPort() + PATH;
+    }
+
+    /**
+     * Reads a notification, answers it and hands it to the listener.
+     */
+    private void receive(HttpExchange exchange) throws IOException {
+        String body = readBody(exchange.getRequestBody());
+
+        // Answered first, so that the server is never kept waiting by the dashboard
+        exchange.sendResponseHeaders(200, -1);
+
+        Set<String> patientIDs = parsePatients(body, exchange.getRequestHeaders().getFirst("Content-Type"));
+        if (patientIDs.isEmpty()) {
+            listener.unknownNotified();
+        }
+        for (String patientID : patientIDs) {
+            listener.observationNotified(patientID);
+        }
+    }
+
+    /**
+     * Finds the patients of the observations within a notification body.
+     * @param body The body of the notification, may be empty.
+     * @param contentType The content type of the body, may be null.
+     * @return The ids of the patients, empty if there is no readable observation.
+     */
+    private static Set<String> parsePatients(String body, String contentType) {
+        Set<String> patientIDs = new LinkedHashSet<String>();
+        if (body.trim().isEmpty()) {
+            return patientIDs;
+        }
+
+        IBaseResource resource;
+        try {
+            if (contentType != null && contentType.contains("xml")) {
+                resource = FHIRClientFactory.getContext().newXmlParser().parseResource(body);
+            } else {
+                resource = FHIRClientFactory.getContext().newJsonParser().parseResource(body);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Could not read subscription notification: " + e.getMessage());
+            return patientIDs;
+        }
+
+        if (resource instanceof Observation) {
+            addPatient(patientIDs, (Observation) resource);
+        } else if (resource instanceof Bundle) {
+            for (Bundle.BundleEntryComponent entry : ((Bundle) resource).getEntry()) {
+                if (entry.getResource() instanceof Observation) {
+                    addPatient(patientIDs, (Observation) entry.getResource());
+                }
+            }
+        }
+        return patientIDs;
+    }
+
+    /**
+     * Adds the patient of an observation.
+     */
+    private static void addPatient(Set<String> patientIDs, Observation observation) {
+        String patientID = observation.getSubject().getReferenceElement().getIdPart();
+        if (patientID != null) {
+            patientIDs.add(patientID);
+        }
+    }
+
+    /**
+     * Reads the whole body of a request.
+     */
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
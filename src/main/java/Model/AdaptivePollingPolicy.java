@@ -0,0 +1,128 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which monitored patients are polled on each refresh. Every patient has its own polling interval: it goes back
+ * to the minimum as soon as new observations arrive for the patient, and doubles every time a poll finds nothing new,
+ * up to the maximum. Patients whose readings change often are polled on every refresh, while stable patients are only
+ * polled now and then.
+ *
+ * The bounds can be changed with the fhir.poll.minInterval and fhir.poll.maxInterval system properties (ms).
+ */
+public class AdaptivePollingPolicy {
+    // Default bounds
+    public static final long DEFAULT_MIN_INTERVAL = 0;
+    public static final long DEFAULT_MAX_INTERVAL = 3600000;
+
+    // Fraction of an interval a patient may be polled early, so that small delays of the refreshes do not skip it
+    private static final double SLACK = 0.05;
+
+    private final long minInterval;
+    private final long maxInterval;
+    private final Map<String, PollState> states;
+
+    // Counters used to verify the saving
+    private long polled;
+    private long skipped;
+
+    /**
+     * Creates a policy with the bounds of the system properties.
+     */
+    public AdaptivePollingPolicy() {
+        this(Long.getLong("fhir.poll.minInterval", DEFAULT_MIN_INTERVAL),
+                Long.getLong("fhir.poll.maxInterval", DEFAULT_MAX_INTERVAL));
+    }
+
+    /**
+     * Creates a policy with specific bounds.
+     * @param minInterval The shortest interval between polls of a patient in milliseconds.
+     * @param maxInterval The longest interval between polls of a patient in milliseconds.
+     */
+    public AdaptivePollingPolicy(long minInterval, long maxInterval) {
+        if (minInterval < 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid polling bounds: " + minInterval + " to " + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.states = new HashMap<String, PollState>();
+    }
+
+    /**
+     * Selects the patients that are due to be polled. Patients that have never been polled are always due.
+     * @param patientIDs The ids of the monitored patients.
+     * @param now The current time in epoch milliseconds.
+     * @return The ids of the due patients, in the same order.
+     */
+    public synchronized List<String> selectDue(List<String> patientIDs, long now) {
+        List<String> due = new ArrayList<String>();
+        for (String patientID : patientIDs) {
+            PollState state = states.get(patientID);
+            if (state == null) {
+                state = new PollState(minInterval);
+                states.put(patientID, state);
+            }
+
+            if (state.lastPoll < 0 || state.lastPoll + state.interval <= now + (long) (SLACK * state.interval)) {
+                state.selected = now;
+                due.add(patientID);
+            }
+        }
+
+        polled += due.size();
+        skipped += patientIDs.size() - due.size();
+        return due;
+    }
+
+    /**
+     * Records the result of polling a patient selected by selectDue. Patients whose poll failed are not recorded, so
+     * they stay due.
+     * @param patientID The id of the patient.
+     * @param arrived Whether new observations arrived for the patient.
+     */
+    public synchronized void recordPoll(String patientID, boolean arrived) {
+        PollState state = states.get(patientID);
+        if (state == null || state.selected < 0) {
+            return;
+        }
+
+        if (arrived) {
+            state.interval = minInterval;
+        } else {
+            // The first quiet poll grows the interval to at least the time since the previous poll
+            long elapsed = state.lastPoll < 0 ? 0 : state.selected - state.lastPoll;
+            state.interval = Math.max(minInterval, Math.min(maxInterval, Math.max(state.interval * 2, elapsed)));
+        }
+        state.lastPoll = state.selected;
+        state.selected = -1;
+    }
+
+    /**
+     * Forgets the history of a patient, such as when it is no longer monitored.
+     * @param patientID The id of the patient.
+     */
+    public synchronized void forget(String patientID) {
+        states.remove(patientID);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return polled + " polled and " + skipped + " skipped in total";
+    }
+
+    /**
+     * The polling history of a single patient.
+     */
+    private static class PollState {
+        private long interval;
+        private long lastPoll = -1;
+        private long selected = -1;
+
+        private PollState(long interval) {
+            this.interval = interval;
+        }
+    }
+}
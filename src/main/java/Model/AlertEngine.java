@@ -0,0 +1,227 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  Evaluates the alert rules of the monitored patients. The rules are only evaluated when the readings of a patient
+ *  or the limits they depend on change, and the alerts of every patient are kept as a set of bits, so looking them up
+ *  is cheap. Listeners are told whenever the alerts of a patient change.
+ *
+ *  A patient's cholesterol is high when it is above the average of the monitored patients, and its latest blood
+ *  pressures are high when they are above the set limits. The blood pressure is rising when each of the latest
+ *  systolic readings is higher than the one before.
+ */
+public class AlertEngine {
+    // Alert bits
+    public static final int HIGH_CHOLESTEROL = 1;
+    public static final int HIGH_SYSTOLIC = 1 << 1;
+    public static final int HIGH_DIASTOLIC = 1 << 2;
+    public static final int RISING_BLOOD_PRESSURE = 1 << 3;
+
+    // Amount of latest systolic readings that have to keep rising
+    private static final int RISING_READINGS = 3;
+
+    private final MonitorPatientList monitoredPatients;
+    private final ArrayList<AlertListener> listeners;
+
+    // Alerts of each patient by patient id, patients without alerts are left out
+    private final Map<String, Integer> alerts;
+
+    private float systolicLimit;
+    private float diastolicLimit;
+
+    // The average the cholesterol alerts were evaluated with, NaN when there are too few patients to compare
+    private float evaluatedAverage;
+
+    /**
+     *  Setup the engine without blood pressure limits.
+     *
+     *  @param monitoredPatients: The monitored patients
+     */
+    public AlertEngine(MonitorPatientList monitoredPatients) {
+        this.monitoredPatients = monitoredPatients;
+        this.listeners = new ArrayList<AlertListener>();
+        this.alerts = new HashMap<String, Integer>();
+        this.systolicLimit = Float.POSITIVE_INFINITY;
+        this.diastolicLimit = Float.POSITIVE_INFINITY;
+        this.evaluatedAverage = Float.NaN;
+    }
+
+    /**
+     *  Adds a listener for changes to the alerts.
+     *
+     *  @param listener: The listener to be added
+     */
+    public void addAlertListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     *  Returns the alerts of a patient.
+     *
+     *  @param patient: The patient
+     *  @return The alert bits of the patient, 0 if it has none
+     */
+    public int getAlerts(AppPatient patient) {
+        Integer patientAlerts = alerts.get(patient.getId());
+        return patientAlerts == null ? 0 : patientAlerts;
+    }
+
+    /**
+     *  Checks if a patient has an alert.
+     *
+     *  @param patient: The patient
+     *  @param alert:   The alert bit
+     */
+    public boolean hasAlert(AppPatient patient, int alert) {
+        return (getAlerts(patient) & alert) != 0;
+    }
+
+    /**
+     *  Getter for the systolic limit.
+     */
+    public float getSystolicLimit() {
+        return systolicLimit;
+    }
+
+    /**
+     *  Sets the systolic limit and evaluates the patients again.
+     *
+     *  @param systolicLimit: The highest systolic blood pressure without an alert
+     */
+    public void setSystolicLimit(float systolicLimit) {
+        this.systolicLimit = systolicLimit;
+        evaluateAll();
+    }
+
+    /**
+     *  Getter for the diastolic limit.
+     */
+    public float getDiastolicLimit() {
+        return diastolicLimit;
+    }
+
+    /**
+     *  Sets the diastolic limit and evaluates the patients again.
+     *
+     *  @param diastolicLimit: The highest diastolic blood pressure without an alert
+     */
+    public void setDiastolicLimit(float diastolicLimit) {
+        this.diastolicLimit = diastolicLimit;
+        evaluateAll();
+    }
+
+    /**
+     *  Evaluates the patients whose readings changed, or every monitored patient if the average cholesterol changed
+     *  with them.
+     *
+     *  @param changedPatients: The patients whose readings changed
+     */
+    public void patientsChanged(Collection<AppPatient> changedPatients) {
+        if (averageChanged()) {
+            evaluateAll();
+            return;
+        }
+        for (AppPatient patient : changedPatients) {
+            if (monitoredPatients.contains(patient)) {
+                evaluate(patient);
+            }
+        }
+    }
+
+    /**
+     *  Drops the alerts of a patient that is no longer monitored, and evaluates the others if the average changed.
+     *
+     *  @param patient: The removed patient
+     */
+    public void patientRemoved(AppPatient patient) {
+        Integer previousAlerts = alerts.remove(patient.getId());
+        if (previousAlerts != null) {
+            notifyListeners(patient, previousAlerts, 0);
+        }
+        if (averageChanged()) {
+            evaluateAll();
+        }
+    }
+
+    /**
+     *  Evaluates every monitored patient.
+     */
+    private void evaluateAll() {
+        evaluatedAverage = comparedAverage();
+        for (int i = 0; i < monitoredPatients.count(); i++) {
+            evaluate(monitoredPatients.get(i));
+        }
+    }
+
+    /**
+     *  Evaluates the rules of a patient and notifies the listeners if its alerts changed.
+     */
+    private void evaluate(AppPatient patient) {
+        int patientAlerts = 0;
+        if (patient.hasCholesterol() && patient.getCholesterolValue() > evaluatedAverage) {
+            patientAlerts |= HIGH_CHOLESTEROL;
+        }
+        if (patient.getBloodPressureCount() > 0) {
+            if (patient.getSystolic(0) > systolicLimit) {
+                patientAlerts |= HIGH_SYSTOLIC;
+            }
+            if (patient.getDiastolic(0) > diastolicLimit) {
+                patientAlerts |= HIGH_DIASTOLIC;
+            }
+        }
+        if (isRising(patient)) {
+            patientAlerts |= RISING_BLOOD_PRESSURE;
+        }
+
+        int previousAlerts = getAlerts(patient);
+        if (patientAlerts != previousAlerts) {
+            if (patientAlerts == 0) {
+                alerts.remove(patient.getId());
+            } else {
+                alerts.put(patient.getId(), patientAlerts);
+            }
+            notifyListeners(patient, previousAlerts, patientAlerts);
+        }
+    }
+
+    /**
+     *  Checks if each of the latest systolic readings of a patient is higher than the one before, the first reading
+     *  being the latest.
+     */
+    private static boolean isRising(AppPatient patient) {
+        if (patient.getBloodPressureCount() < RISING_READINGS) {
+            return false;
+        }
+        for (int i = 0; i < RISING_READINGS - 1; i++) {
+            if (!(patient.getSystolic(i) > patient.getSystolic(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *  Checks if the average the cholesterol alerts depend on is different to the one they were evaluated with.
+     */
+    private boolean averageChanged() {
+        float average = comparedAverage();
+        return Float.compare(average, evaluatedAverage) != 0;
+    }
+
+    /**
+     *  Returns the average cholesterol patients are compared with, a single patient is never compared with itself.
+     */
+    private float comparedAverage() {
+        return monitoredPatients.count() > 1 ? monitoredPatients.getAverageCholesterol() : Float.NaN;
+    }
+
+    private void notifyListeners(AppPatient patient, int previousAlerts, int patientAlerts) {
+        for (AlertListener listener : listeners) {
+            listener.alertsChanged(patient, previousAlerts, patientAlerts);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package Model;
+
+/**
+ * The listener interface for changes to the alerts of the monitored patients, see AlertEngine.
+ */
+
+public interface AlertListener {
+    public void alertsChanged(AppPatient patient, int previousAlerts, int alerts);
+}
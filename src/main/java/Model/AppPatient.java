@@ -1,25 +1,46 @@
 package Model;
 
 import Controller.FHIRAPI;
+import Controller.PatientObservations;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
  * The patient class that holds the patient's details. This class is different to the HAPI FHIR API Patient class.
+ * The observations are stored as primitives, the displayed strings are formatted once whenever the readings change.
  * @author Mujtaba Zahidi
  * @author Kenneth Huynh
  */
 
 public class AppPatient implements PatientObserver {
+    public static final int BLOOD_PRESSURE_READINGS = PatientObservations.BLOOD_PRESSURE_READINGS;
+
     private String id;
     private String name;
-    private String cholesterolLevel;
-    private String effectiveDateTimeCholesterol;
     private String birthDate;
     private String gender;
     private String address;
-    // These array values go from 0 to 4 and go from latest to oldest.
-    private String[] systolicBloodPressure;
-    private String[] diastolicBloodPressure;
-    private String[] effectiveDateTimeBloodPressure;
+
+    // The cholesterol values are only valid if hasCholesterol is set. Times are in epoch milliseconds.
+    private boolean hasCholesterol;
+    private float cholesterolLevel;
+    private long cholesterolTime;
+
+    // These array values go from 0 to 4 and go from latest to oldest, only the first bloodPressureCount are valid.
+    private int bloodPressureCount;
+    private final float[] systolicBloodPressure = new float[BLOOD_PRESSURE_READINGS];
+    private final float[] diastolicBloodPressure = new float[BLOOD_PRESSURE_READINGS];
+    private final long[] bloodPressureTime = new long[BLOOD_PRESSURE_READINGS];
+
+    // Displayed strings of the latest readings, kept so that painting a cell does not format them again
+    private String cholesterolText = "N/A";
+    private String cholesterolTimeText = "N/A";
+    private String latestSystolicText = "N/A";
+    private String latestDiastolicText = "N/A";
+    private String latestBloodPressureTimeText = "N/A";
 
     public AppPatient() {}
 
@@ -28,22 +49,19 @@ public class AppPatient implements PatientObserver {
      * @param api Requires the current api object to be passed. This means it has a dependency relationship with the Controller.FHIRAPI class.
      */
     public void updateCholesterol(FHIRAPI api) {
-        String[] cholesterolCall = api.getPatientCholesterol(this.getId());
+        applyCholesterol(api.getPatientCholesterol(this.getId()));
+    }
 
-        // Checks to see if it is not empty
-        if (cholesterolCall == null) {
-            this.setCholesterolLevel("N/A");
-            this.setEffectiveDateTimeCholesterol("N/A");
-        }
-        else {
-            // Checks to see if the details have been correctly retrieved
-            if (cholesterolCall[0].equals("")) {
-                this.setCholesterolLevel("N/A");
-                this.setEffectiveDateTimeCholesterol("N/A");
-            } else {
-                this.setCholesterolLevel(cholesterolCall[0]);
-                this.setEffectiveDateTimeCholesterol(cholesterolCall[1]);
-            }
+    /**
+     * Merges the cholesterol of a cholesterol call into the patient. The call only contains observations newer than the
+     * previous call, so the current value is kept when it has no reading or its reading is older.
+     * @param observations The observations of the call, null if it could not be retrieved.
+     */
+    public void applyCholesterol(PatientObservations observations) {
+        // Checks to see if there is a new reading
+        if (observations != null && observations.hasCholesterol()
+                && (!hasCholesterol || observations.getCholesterolTime() >= cholesterolTime)) {
+            setCholesterol(observations.getCholesterol(), observations.getCholesterolTime());
         }
 
         System.out.println("Updated cholesterol information on patient: " + this.getName());
@@ -54,57 +72,92 @@ public class AppPatient implements PatientObserver {
      * @param api Requires the current api object to be passed. This means it has a dependency relationship with the Controller.FHIRAPI class.
      */
     public void updateBloodPressure(FHIRAPI api) {
-        String[][] bloodPressureCall = api.getPatientBloodPressure(this.getId());
+        applyBloodPressure(api.getPatientBloodPressure(this.getId()));
+    }
 
+    /**
+     * Merges the blood pressures of a blood pressure call into the patient. The call only contains observations newer
+     * than the previous call, they are merged with the current readings by date time, keeping the latest five.
+     * @param observations The observations of the call, null if it could not be retrieved.
+     */
+    public void applyBloodPressure(PatientObservations observations) {
         // Checks to see if it is not empty
-        if (bloodPressureCall == null) {
-            this.setDiastolicBloodPressure(null);
-            this.setSystolicBloodPressure(null);
-            this.setEffectiveDateTimeBloodPressure(null);
+        if (observations == null) {
+            System.out.println("Could not update blood pressure information on patient: " + this.getName());
+            return;
         }
-        else {
-            this.setDiastolicBloodPressure(bloodPressureCall[0]);
-            this.setSystolicBloodPressure(bloodPressureCall[1]);
-            this.setEffectiveDateTimeBloodPressure(bloodPressureCall[2]);
+
+        float[] diastolic = new float[BLOOD_PRESSURE_READINGS];
+        float[] systolic = new float[BLOOD_PRESSURE_READINGS];
+        long[] time = new long[BLOOD_PRESSURE_READINGS];
+        int count = 0;
+
+        // Both lists go from latest to oldest, so they are merged like sorted lists. A new reading with the same date
+        // time as a current one replaces it.
+        int newReading = 0;
+        int currentReading = 0;
+        while (count < BLOOD_PRESSURE_READINGS
+                && (newReading < observations.getBloodPressureCount() || currentReading < bloodPressureCount)) {
+            boolean takeNew = currentReading == bloodPressureCount || (newReading < observations.getBloodPressureCount()
+                    && observations.getBloodPressureTime(newReading) >= bloodPressureTime[currentReading]);
+            if (takeNew) {
+                if (currentReading < bloodPressureCount
+                        && observations.getBloodPressureTime(newReading) == bloodPressureTime[currentReading]) {
+                    currentReading++;
+                }
+                diastolic[count] = observations.getDiastolic(newReading);
+                systolic[count] = observations.getSystolic(newReading);
+                time[count] = observations.getBloodPressureTime(newReading);
+                newReading++;
+            } else {
+                diastolic[count] = diastolicBloodPressure[currentReading];
+                systolic[count] = systolicBloodPressure[currentReading];
+                time[count] = bloodPressureTime[currentReading];
+                currentReading++;
+            }
+            count++;
         }
+        setBloodPressure(count, diastolic, systolic, time);
 
         System.out.println("Updated blood pressure information on patient: " + this.getName());
     }
 
     /**
-     * Setter for patient ID.
-     *
-     * @param id: the ID of the patient
+     * Replaces the name, gender, birth date and address of the patient with the ones of a newer copy of the same
+     * patient. The readings are left alone, they are merged with applyCholesterol and applyBloodPressure.
+     * @param patient The newer copy of the patient.
      */
-    public void setId(String id) {
-        this.id = id;
+    public void updateFrom(AppPatient patient) {
+        this.setName(patient.getName());
+        this.setGender(patient.getGender());
+        this.setBirthDate(patient.getBirthDate());
+        this.setAddress(patient.getAddress());
     }
 
     /**
-     * Setter for patient's name.
-     *
-     * @param name: the name of the patient
+     * Getter for the readings of the patient, in the same form as the ones retrieved from the server.
      */
-    public void setName(String name) {
-        this.name = name;
+    public PatientObservations getObservations() {
+        return new PatientObservations(id, hasCholesterol, cholesterolLevel, cholesterolTime, bloodPressureCount,
+                diastolicBloodPressure, systolicBloodPressure, bloodPressureTime);
     }
 
     /**
-     * Setter for patient's cholesterol level.
+     * Setter for patient ID.
      *
-     * @param cholesterolLevel: the cholesterol level of the patient
+     * @param id: the ID of the patient
      */
-    public void setCholesterolLevel(String cholesterolLevel) {
-        this.cholesterolLevel = cholesterolLevel;
+    public void setId(String id) {
+        this.id = id;
     }
 
     /**
-     * Setter for cholesterol measurement effective time date.
+     * Setter for patient's name.
      *
-     * @param effectiveDateTimeCholesterol: the effective time date for the cholesterol level of the patient
+     * @param name: the name of the patient
      */
-    public void setEffectiveDateTimeCholesterol(String effectiveDateTimeCholesterol) {
-        this.effectiveDateTimeCholesterol = effectiveDateTimeCholesterol;
+    public void setName(String name) {
+        this.name = name;
     }
 
     /**
@@ -148,20 +201,6 @@ public class AppPatient implements PatientObserver {
         return name;
     }
 
-    /**
-     * Getter for patient's cholesterol level.
-     */
-    public String getCholesterolLevel() {
-        return cholesterolLevel;
-    }
-
-    /**
-     * Getter for patient's cholesterol level effective date time.
-     */
-    public String getEffectiveDateTimeCholesterol() {
-        return effectiveDateTimeCholesterol;
-    }
-
     /**
      * Getter for patient's birth date.
      */
@@ -184,27 +223,149 @@ public class AppPatient implements PatientObserver {
     }
 
     /**
-     * Getter for systolic blood pressure.
-     * @return String array with systolic blood pressures.
+     * Setter for patient's cholesterol level.
+     *
+     * @param level: the cholesterol level of the patient
+     * @param time:  the effective date time of the cholesterol level in epoch milliseconds
      */
-    public String[] getSystolicBloodPressure() {
-        return systolicBloodPressure;
+    public void setCholesterol(float level, long time) {
+        this.cholesterolLevel = level;
+        this.cholesterolTime = time;
+        this.hasCholesterol = true;
+        formatCholesterol();
     }
 
     /**
-     * Setter for systolic blood pressure.
-     * @param systolicBloodPressure String array of the systolic blood pressure.
+     * Marks the patient's cholesterol level as not measured.
      */
-    public void setSystolicBloodPressure(String[] systolicBloodPressure) {
-        this.systolicBloodPressure = systolicBloodPressure;
+    public void clearCholesterol() {
+        this.cholesterolLevel = 0;
+        this.cholesterolTime = 0;
+        this.hasCholesterol = false;
+        formatCholesterol();
     }
 
     /**
-     * Getter for diastolic blood pressure.
-     * @return String array with diastolic blood pressures.
+     * Setter for the blood pressure readings, from latest to oldest.
+     *
+     * @param count:     the amount of readings
+     * @param diastolic: the diastolic blood pressures
+     * @param systolic:  the systolic blood pressures
+     * @param time:      the effective date times of the readings in epoch milliseconds
      */
-    public String[] getDiastolicBloodPressure() {
-        return diastolicBloodPressure;
+    public void setBloodPressure(int count, float[] diastolic, float[] systolic, long[] time) {
+        this.bloodPressureCount = Math.min(count, BLOOD_PRESSURE_READINGS);
+        System.arraycopy(diastolic, 0, this.diastolicBloodPressure, 0, this.bloodPressureCount);
+        System.arraycopy(systolic, 0, this.systolicBloodPressure, 0, this.bloodPressureCount);
+        System.arraycopy(time, 0, this.bloodPressureTime, 0, this.bloodPressureCount);
+        formatBloodPressure();
+    }
+
+    /**
+     * Setter for all the observations of the patient, replacing the current ones.
+     *
+     * @param observations: the observations of the patient, null if there are none
+     */
+    public void setObservations(PatientObservations observations) {
+        if (observations == null || !observations.hasCholesterol()) {
+            clearCholesterol();
+        } else {
+            setCholesterol(observations.getCholesterol(), observations.getCholesterolTime());
+        }
+
+        bloodPressureCount = 0;
+        if (observations != null) {
+            bloodPressureCount = Math.min(observations.getBloodPressureCount(), BLOOD_PRESSURE_READINGS);
+            for (int i = 0; i < bloodPressureCount; i++) {
+                diastolicBloodPressure[i] = observations.getDiastolic(i);
+                systolicBloodPressure[i] = observations.getSystolic(i);
+                bloodPressureTime[i] = observations.getBloodPressureTime(i);
+            }
+        }
+        formatBloodPressure();
+    }
+
+    /**
+     * Formats the displayed strings of the cholesterol level.
+     */
+    private void formatCholesterol() {
+        cholesterolText = hasCholesterol ? formatValue(cholesterolLevel) : "N/A";
+        cholesterolTimeText = hasCholesterol ? formatDateTime(cholesterolTime) : "N/A";
+    }
+
+    /**
+     * Formats the displayed strings of the latest blood pressure.
+     */
+    private void formatBloodPressure() {
+        latestSystolicText = bloodPressureCount > 0 ? formatValue(systolicBloodPressure[0]) : "N/A";
+        latestDiastolicText = bloodPressureCount > 0 ? formatValue(diastolicBloodPressure[0]) : "N/A";
+        latestBloodPressureTimeText = bloodPressureCount > 0 ? formatDateTime(bloodPressureTime[0]) : "N/A";
+    }
+
+    /**
+     * Whether the patient's cholesterol level has been measured.
+     */
+    public boolean hasCholesterol() {
+        return hasCholesterol;
+    }
+
+    /**
+     * Getter for patient's cholesterol level, only valid if hasCholesterol is true.
+     */
+    public float getCholesterolValue() {
+        return cholesterolLevel;
+    }
+
+    /**
+     * Getter for patient's cholesterol level effective date time in epoch milliseconds.
+     */
+    public long getCholesterolTime() {
+        return cholesterolTime;
+    }
+
+    /**
+     * Getter for the amount of blood pressure readings.
+     */
+    public int getBloodPressureCount() {
+        return bloodPressureCount;
+    }
+
+    /**
+     * Getter for a systolic blood pressure.
+     * @param reading The reading, from 0 for the latest to getBloodPressureCount() - 1.
+     */
+    public float getSystolic(int reading) {
+        return systolicBloodPressure[reading];
+    }
+
+    /**
+     * Getter for a diastolic blood pressure.
+     * @param reading The reading, from 0 for the latest to getBloodPressureCount() - 1.
+     */
+    public float getDiastolic(int reading) {
+        return diastolicBloodPressure[reading];
+    }
+
+    /**
+     * Getter for the date time of a blood pressure reading in epoch milliseconds.
+     * @param reading The reading, from 0 for the latest to getBloodPressureCount() - 1.
+     */
+    public long getBloodPressureTime(int reading) {
+        return bloodPressureTime[reading];
+    }
+
+    /**
+     * Getter for patient's cholesterol level, formatted for display.
+     */
+    public String getCholesterolLevel() {
+        return cholesterolText;
+    }
+
+    /**
+     * Getter for patient's cholesterol level effective date time, formatted for display.
+     */
+    public String getEffectiveDateTimeCholesterol() {
+        return cholesterolTimeText;
     }
 
     /**
@@ -212,10 +373,7 @@ public class AppPatient implements PatientObserver {
      * @return String value of the latest diastolic blood pressure
      */
     public String getLatestDiastolicBloodPressure() {
-        if (diastolicBloodPressure[0] == null) {
-            return "N/A";
-        }
-        return diastolicBloodPressure[0];
+        return latestDiastolicText;
     }
 
     /**
@@ -223,10 +381,7 @@ public class AppPatient implements PatientObserver {
      * @return String value of the latest systolic blood pressure
      */
     public String getLatestSystolicBloodPressure() {
-        if (systolicBloodPressure[0] == null) {
-            return "N/A";
-        }
-        return systolicBloodPressure[0];
+        return latestSystolicText;
     }
 
     /**
@@ -234,33 +389,28 @@ public class AppPatient implements PatientObserver {
      * @return String value of the latest date time for blood pressure
      */
     public String getLatestEffectiveDateTimeBloodPressure() {
-        if (effectiveDateTimeBloodPressure[0] == null) {
-            return "N/A";
-        }
-        return effectiveDateTimeBloodPressure[0];
+        return latestBloodPressureTimeText;
     }
 
     /**
-     * Setter for diastolic blood pressure.
-     * @param diastolicBloodPressure String array of the diastolic blood pressure.
+     * Formats a measured value for display, whole values are shown without decimals.
+     * @param value The measured value.
+     * @return The formatted value.
      */
-    public void setDiastolicBloodPressure(String[] diastolicBloodPressure) {
-        this.diastolicBloodPressure = diastolicBloodPressure;
-    }
-
-    /**
-     * Getter for date and time of the blood pressures.
-     * @return String array with date and time of the blood pressures.
-     */
-    public String[] getEffectiveDateTimeBloodPressure() {
-        return effectiveDateTimeBloodPressure;
+    public static String formatValue(float value) {
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Float.toString(value);
     }
 
     /**
-     * Setter for date and time of the blood pressure.
-     * @param effectiveDateTimeBloodPressure String array of date and time of the blood pressure.
+     * Formats a date time for display in the local timezone.
+     * @param time The date time in epoch milliseconds.
+     * @return The formatted date time.
      */
-    public void setEffectiveDateTimeBloodPressure(String[] effectiveDateTimeBloodPressure) {
-        this.effectiveDateTimeBloodPressure = effectiveDateTimeBloodPressure;
+    public static String formatDateTime(long time) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
     }
 }
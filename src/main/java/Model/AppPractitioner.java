@@ -1,8 +1,14 @@
 package Model;
 
 import Controller.FHIRAPI;
+import Controller.PatientObservations;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * The seperate practitioner class to the FHIR API. This class contains the practitioner's id, a list of the patients and another list containing the monitored patients.
@@ -13,93 +19,220 @@ public class AppPractitioner implements PractitionerSubject {
     private final MonitorPatientList monitorPatientList;
     private final FHIRAPI api;
 
+    // Local copy of the patients, used to show them before they have been retrieved from the server
+    private final PatientSnapshot snapshot;
+    private final ArrayList<PatientListListener> listeners;
+
+    // Decides which monitored patients are polled on each refresh
+    private final AdaptivePollingPolicy pollingPolicy;
+
+    // Kept lines of the blood pressure details, rendered again only for the patients that changed
+    private final BloodPressureSummary bloodPressureSummary;
+
+    // Type-ahead search over the names, ids and addresses of all the patients
+    private final PatientSearchIndex searchIndex;
+
+    // Alerts of the monitored patients, evaluated whenever their readings change
+    private final AlertEngine alertEngine;
+
     /**
-     * The constructor will only need the practitioner's id. Everything is set by default.
+     * The constructor will only need the practitioner's id. Everything is set by default. If a snapshot of the
+     * practitioner's patients exists it is used straight away, the patients are retrieved from the server by
+     * loadInBackground.
      * @param id The id of the practitioner. This is used for the api calls.
      */
     public AppPractitioner(String id){
         patientList = new PatientList();
         monitorPatientList = new MonitorPatientList();
+        listeners = new ArrayList<PatientListListener>();
+        pollingPolicy = new AdaptivePollingPolicy();
+        bloodPressureSummary = new BloodPressureSummary();
+        searchIndex = new PatientSearchIndex();
+        alertEngine = new AlertEngine(monitorPatientList);
 
         // Setup API with practitioner
         api = new FHIRAPI();
         api.setPractitionerID(id);
 
-        getAllPatientsFromAPI();
+        snapshot = new PatientSnapshot(id);
+        ArrayList<AppPatient> patients = snapshot.load();
+        if (patients != null) {
+            for (AppPatient patient : patients) {
+                patientList.append(patient);
+                searchIndex.add(patient);
+            }
+        }
     }
 
     /**
-     * This method retrieves all the necessary patient information through the api calls and sets it to the patient list.
+     * Retrieves the patients from the server on a background thread. Each chunk of patients is merged into the patient
+     * list as soon as it is loaded, while the encounters are still being paged through. Patients already in the list
+     * from the snapshot are updated and new ones are appended. The snapshot is saved again once all are loaded, unless
+     * some of the patients or their observations could not be retrieved.
+     * @param publisher Runs the changes to the patient list, so that they happen on the same thread that reads it.
      */
-    private void getAllPatientsFromAPI() {
-        // Retrieve list of patient urls to use
-        ArrayList<String> patientURLS = api.getPatientListsURL();
-
-        // Loop through the patient urls and create each patient
-        PatientFactory factory = new ConcretePatientFactory();
-        for (int i = 0; i < patientURLS.size(); i++) {
-            String[] info = api.getPatientInfo(patientURLS.get(i));
-            AppPatient patient;
-
-            // Retrieve the cholesterol and base information
-            String[] cholesterolCall = api.getPatientCholesterol(patientURLS.get(i));
-            String cholesterol;
-            String effectiveTimeDateCholesterol;
-            if (cholesterolCall == null) {
-                cholesterol = "N/A";
-                effectiveTimeDateCholesterol = "N/A";
-            }
-            else {
-                // Check for empty strings
-                if (cholesterolCall[0].equals("")) {
-                    cholesterol = "N/A";
-                    effectiveTimeDateCholesterol = "N/A";
+    public void loadInBackground(final Executor publisher) {
+        Thread loading = new Thread(new Runnable() {
+            public void run() {
+                PatientLoader loader = new PatientLoader(api);
+                ArrayList<AppPatient> patients = loader.streamPatients(new Consumer<List<AppPatient>>() {
+                    public void accept(final List<AppPatient> chunk) {
+                        publisher.execute(new Runnable() {
+                            public void run() {
+                                mergePatients(chunk);
+                            }
+                        });
+                    }
+                });
+                System.out.println(api.getResourceCache());
+                if (loader.isComplete()) {
+                    snapshot.save(patients);
                 } else {
-                    cholesterol = cholesterolCall[0];
-                    effectiveTimeDateCholesterol = cholesterolCall[1];
+                    System.out.println("Kept the previous snapshot, the patients were not all retrieved");
                 }
             }
+        }, "patient-loading");
+        loading.setDaemon(true);
+        loading.start();
+    }
 
-            // Retrieve the blood pressure values
-            String[][] bloodPressureCall = api.getPatientBloodPressure(patientURLS.get(i));
-            String[] diastolic = {};
-            String[] systolic = {};
-            String[] effectiveDateTimeBloodPressure = {};
-            // Checks to see if it is not empty
-            if (bloodPressureCall == null) {
-                diastolic = null;
-                systolic = null;
-                effectiveDateTimeBloodPressure = null;
-            }
-            else {
-                diastolic = bloodPressureCall[0];
-                systolic = bloodPressureCall[1];
-                effectiveDateTimeBloodPressure = bloodPressureCall[2];
+    /**
+     * Updates the patients already in the list with the ones retrieved from the server and appends the new ones.
+     * Patients no longer returned by the server are kept until the next login.
+     * @param patients The patients retrieved from the server.
+     */
+    private void mergePatients(List<AppPatient> patients) {
+        int previousCount = patientList.count();
+        int firstUpdated = Integer.MAX_VALUE;
+        int lastUpdated = -1;
+        ArrayList<AppPatient> changedPatients = new ArrayList<AppPatient>();
+        for (AppPatient patient : patients) {
+            int index = patientList.indexOfId(patient.getId());
+            if (index != -1) {
+                // The loaded readings may only be the ones newer than the previous searches, so they are merged with
+                // the current ones instead of replacing them
+                AppPatient existing = patientList.get(index);
+                PatientObservations observations = patient.getObservations();
+                existing.updateFrom(patient);
+                existing.applyCholesterol(observations);
+                existing.applyBloodPressure(observations);
+                searchIndex.update(index, existing);
+                if (monitorPatientList.update(existing)) {
+                    changedPatients.add(existing);
+                }
+                monitorPatientList.markChanged(existing);
+                // The name or any of the blood pressures in the line may have changed, not only the latest reading
+                if (monitorPatientList.contains(existing)) {
+                    bloodPressureSummary.invalidate(existing.getId());
+                }
+                firstUpdated = Math.min(firstUpdated, index);
+                lastUpdated = Math.max(lastUpdated, index);
+            } else {
+                patientList.append(patient);
+                searchIndex.add(patient);
             }
+        }
+        alertEngine.patientsChanged(changedPatients);
 
-            patient = factory.createPatient(info[0], info[1], info[2], info[3], info[4], cholesterol,
-                    effectiveTimeDateCholesterol, diastolic, systolic, effectiveDateTimeBloodPressure);
-            patientList.append(patient);
+        for (PatientListListener listener : listeners) {
+            if (lastUpdated >= 0) {
+                listener.patientsUpdated(firstUpdated, lastUpdated);
+            }
+            if (patientList.count() > previousCount) {
+                listener.patientsAdded(previousCount, patientList.count() - 1);
+            }
         }
     }
 
     /**
-     * Observer design pattern method. This notifies all the patients to update their cholesterol informations.
+     * Adds a listener for changes to the patient list made after the practitioner was created.
+     * @param listener The listener to be added.
+     */
+    public void addPatientListListener(PatientListListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Observer design pattern method. This notifies all the patients to update their cholesterol informations. The
+     * observations of all the monitored patients are retrieved with bulk searches instead of two searches per patient.
+     * This blocks while the observations are retrieved, the refresh of the dashboard uses the separate steps instead.
      */
     public void notifyObserver() {
-        // Uses an iterator to find the patient
-        PatientListIterator patientListIterator = monitorPatientList.createIterator();
+        applyObservations(fetchObservations(getMonitoredPatientIDs()));
+    }
 
-        if (monitorPatientList.count() > 0) {
-            AppPatient currPatient = patientListIterator.currentItem();
-            currPatient.updateCholesterol(api);
-            currPatient.updateBloodPressure(api);
-            while (!patientListIterator.isDone()) {
-                currPatient = patientListIterator.next();
-                currPatient.updateCholesterol(api);
-                currPatient.updateBloodPressure(api);
+    /**
+     * Collects the ids of the monitored patients. Must be called on the same thread that changes the patient lists.
+     * @return The ids of the monitored patients.
+     */
+    public List<String> getMonitoredPatientIDs() {
+        ArrayList<String> patientIDs = new ArrayList<String>(monitorPatientList.count());
+        for (int i = 0; i < monitorPatientList.count(); i++) {
+            patientIDs.add(monitorPatientList.get(i).getId());
+        }
+        return patientIDs;
+    }
+
+    /**
+     * Collects the ids of the monitored patients that are due to be polled, according to how often new observations
+     * have arrived for each of them. Must be called on the same thread that changes the patient lists.
+     * @return The ids of the due patients.
+     */
+    public List<String> getDuePatientIDs() {
+        List<String> monitoredPatientIDs = getMonitoredPatientIDs();
+        List<String> dueIDs = pollingPolicy.selectDue(monitoredPatientIDs, System.currentTimeMillis());
+        System.out.println("Polling " + dueIDs.size() + " of " + monitoredPatientIDs.size() + " monitored patients, "
+                + pollingPolicy);
+        return dueIDs;
+    }
+
+    /**
+     * Retrieves the observations of some patients in bulk. This only calls the server and does not change any patient,
+     * so it can run on a background thread.
+     * @param patientIDs The ids of the patients.
+     * @return The observations by patient id. Patients whose observations could not be retrieved are left out.
+     */
+    public Map<String, PatientObservations> fetchObservations(List<String> patientIDs) {
+        if (patientIDs.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, PatientObservations> observations = api.getObservationsBatch(patientIDs);
+
+        // The searches only return observations newer than the previous ones, so any reading is a new arrival
+        for (String patientID : patientIDs) {
+            PatientObservations patientObservations = observations.get(patientID);
+            if (patientObservations != null) {
+                pollingPolicy.recordPoll(patientID, patientObservations.hasCholesterol()
+                        || patientObservations.getBloodPressureCount() > 0);
+            }
+        }
+        return Collections.unmodifiableMap(observations);
+    }
+
+    /**
+     * Applies retrieved observations to the monitored patients. Must be called on the same thread that changes the
+     * patient lists.
+     * @param observations The observations by patient id, from fetchObservations.
+     */
+    public void applyObservations(Map<String, PatientObservations> observations) {
+        ArrayList<AppPatient> changedPatients = new ArrayList<AppPatient>();
+        for (Map.Entry<String, PatientObservations> entry : observations.entrySet()) {
+            // Patients whose observations could not be retrieved keep their previous values, and patients that
+            // stopped being monitored while the observations were retrieved are skipped
+            AppPatient patient = monitorPatientList.getById(entry.getKey());
+            if (patient != null) {
+                patient.applyCholesterol(entry.getValue());
+                patient.applyBloodPressure(entry.getValue());
+                // New blood pressures may replace older readings in the line without changing the latest one
+                if (entry.getValue().getBloodPressureCount() > 0) {
+                    bloodPressureSummary.invalidate(patient.getId());
+                }
+                if (monitorPatientList.update(patient)) {
+                    changedPatients.add(patient);
+                }
             }
         }
+        alertEngine.patientsChanged(changedPatients);
     }
 
     /**
@@ -122,15 +255,8 @@ public class AppPractitioner implements PractitionerSubject {
      * @param patientIndex: the patient to find
      */
     public AppPatient getPatientFromMonitorList(int patientIndex) {
-        // Uses an iterator to find the cholesterol patient
-        PatientListIterator cholesterolIterator = monitorPatientList.createIterator();
-
         if (monitorPatientList.count() > 0) {
-            AppPatient currPatient = cholesterolIterator.currentItem();
-            for (int i = 0; i < patientIndex; i++) {
-                currPatient = cholesterolIterator.next();
-            }
-            return currPatient;
+            return monitorPatientList.get(patientIndex);
         }
         return null;
     }
@@ -141,7 +267,12 @@ public class AppPractitioner implements PractitionerSubject {
      * @param patient: the patient to be appended
      */
     public boolean addPatientToMonitorList(AppPatient patient) {
-        return monitorPatientList.append(patient);
+        boolean added = monitorPatientList.append(patient);
+        if (added) {
+            bloodPressureSummary.invalidate(patient.getId());
+            alertEngine.patientsChanged(Collections.singletonList(patient));
+        }
+        return added;
     }
 
     /**
@@ -150,7 +281,13 @@ public class AppPractitioner implements PractitionerSubject {
      * @param patient: the patient to be removed
      */
     public boolean removePatientFromMonitorList(AppPatient patient) {
-        return monitorPatientList.remove(patient);
+        boolean removed = monitorPatientList.remove(patient);
+        if (removed) {
+            pollingPolicy.forget(patient.getId());
+            bloodPressureSummary.invalidate(patient.getId());
+            alertEngine.patientRemoved(patient);
+        }
+        return removed;
     }
 
     /**
@@ -159,60 +296,45 @@ public class AppPractitioner implements PractitionerSubject {
      * @param patientIndex: the patient to find
      */
     public AppPatient getPatientFromAllPatientsList(int patientIndex) {
-        // Uses an iterator to find the patient
-        PatientListIterator patientListIterator = patientList.createIterator();
-
         if (patientList.count() > 0) {
-            AppPatient currPatient = patientListIterator.currentItem();
-            for (int i = 0; i < patientIndex; i++) {
-                currPatient = patientListIterator.next();
-            }
-            return currPatient;
+            return patientList.get(patientIndex);
         }
         return null;
     }
 
+    /**
+     * Getter for a specific patient in the all patients list by its id.
+     *
+     * @param patientID: the id of the patient to find
+     * @return the patient, or null if the practitioner has no patient with the id
+     */
+    public AppPatient getPatientById(String patientID) {
+        return patientList.getById(patientID);
+    }
+
+    /**
+     * Getter for the alerts of the monitored patients. Listeners can be added to it to be told when they change.
+     */
+    public AlertEngine getAlertEngine() {
+        return alertEngine;
+    }
+
+    /**
+     * Finds the patients whose name, id or address matches a query. Queries of one or two characters match the start
+     * of a word, longer ones match anywhere.
+     *
+     * @param query: the searched text
+     * @return the indices of the matching patients in the all patients list, or every index if the query is blank
+     */
+    public int[] searchPatients(String query) {
+        return searchIndex.search(query);
+    }
+
     /**
      * Creates the string for the blood pressure details needed for the textual requirement 4, showing systolic values and its time.
+     * Only the lines of the patients whose readings changed since the last call are rendered again.
      */
     public String createBloodPressureDetails() {
-        // Uses an iterator to find the patient
-        PatientList cholesterolPatientList = getMonitorPatientList();
-        PatientListIterator patientListIterator = cholesterolPatientList.createIterator();
-        String values = "";
-        // Checks to see if the list is not empty
-        if (cholesterolPatientList.count() > 0) {
-            AppPatient currPatient = patientListIterator.currentItem();
-            String[] systolic = currPatient.getSystolicBloodPressure();
-            String[] time = currPatient.getEffectiveDateTimeBloodPressure();
-            // Checks to see if the patient has blood pressure values
-            if (systolic != null) {
-                values += currPatient.getName() + ": ";
-                for (int i = time.length  - 1; i > 0; i--) {
-                    // checks to see if it has current blood pressure value
-                    if (systolic[i] != null)
-                        values += systolic[i] + " (" + time[i] + "), ";
-                }
-                values += "\n";
-                while (!patientListIterator.isDone()) {
-                    currPatient = patientListIterator.next();
-                    systolic = currPatient.getSystolicBloodPressure();
-                    time = currPatient.getEffectiveDateTimeBloodPressure();
-                    // Checks to see if the patient has blood pressure values
-
-                    if (systolic != null) {
-                        values += currPatient.getName() + ": ";
-                        for (int i = time.length - 1; i > 0; i--) {
-                            // checks to see if it has current blood pressure value
-
-                            if (systolic[i] != null)
-                                values += systolic[i] + " (" + time[i] + "), ";
-                        }
-                    }
-                    values += "\n";
-                }
-            }
-        }
-        return values;
+        return bloodPressureSummary.build(monitorPatientList);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package Model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the textual summary of the systolic blood pressures of the monitored patients. The line of every patient is
+ * kept once it has been rendered and is only rendered again after the patient is invalidated, and the summary itself
+ * is kept until any patient changes. The lines are joined into a single buffer sized to the whole summary.
+ */
+public class BloodPressureSummary {
+    // Rendered line of each patient by patient id
+    private final Map<String, String> lines;
+
+    // The last built summary, null once a patient has changed
+    private String summary;
+
+    public BloodPressureSummary() {
+        lines = new HashMap<String, String>();
+        summary = null;
+    }
+
+    /**
+     * Marks the line of a patient to be rendered again, such as when its readings or name have changed,
+     * or it started or stopped being monitored.
+     * @param patientID The id of the patient.
+     */
+    public void invalidate(String patientID) {
+        lines.remove(patientID);
+        summary = null;
+    }
+
+    /**
+     * Builds the summary of the given patients, in list order.
+     * @param monitoredPatients The monitored patients.
+     * @return The summary, one line per patient.
+     */
+    public String build(PatientList monitoredPatients) {
+        if (summary != null) {
+            return summary;
+        }
+
+        // Nothing is shown unless the first patient has blood pressure values
+        if (monitoredPatients.count() == 0 || monitoredPatients.get(0).getBloodPressureCount() == 0) {
+            summary = "";
+            return summary;
+        }
+
+        String[] patientLines = new String[monitoredPatients.count()];
+        int length = 0;
+        for (int i = 0; i < patientLines.length; i++) {
+            patientLines[i] = line(monitoredPatients.get(i));
+            length += patientLines[i].length();
+        }
+
+        StringBuilder values = new StringBuilder(length);
+        for (String patientLine : patientLines) {
+            values.append(patientLine);
+        }
+        summary = values.toString();
+        return summary;
+    }
+
+    /**
+     * Returns the line of a patient, rendering it if it is not kept.
+     */
+    private String line(AppPatient patient) {
+        String line = lines.get(patient.getId());
+        if (line == null) {
+            line = render(patient);
+            lines.put(patient.getId(), line);
+        }
+        return line;
+    }
+
+    /**
+     * Renders the line of a patient, showing its systolic values and their times from oldest to newest.
+     */
+    private static String render(AppPatient patient) {
+        // Checks to see if the patient has blood pressure values
+        if (patient.getBloodPressureCount() == 0) {
+            return "\n";
+        }
+
+        StringBuilder line = new StringBuilder(64 * AppPatient.BLOOD_PRESSURE_READINGS);
+        line.append(patient.getName()).append(": ");
+        for (int i = AppPatient.BLOOD_PRESSURE_READINGS - 1; i > 0; i--) {
+            // checks to see if it has current blood pressure value
+            if (i < patient.getBloodPressureCount()) {
+                line.append(AppPatient.formatValue(patient.getSystolic(i)))
+                        .append(" (")
+                        .append(AppPatient.formatDateTime(patient.getBloodPressureTime(i)))
+                        .append("), ");
+            }
+        }
+        line.append('\n');
+        return line.toString();
+    }
+}
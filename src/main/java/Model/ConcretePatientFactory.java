@@ -1,5 +1,7 @@
 package Model;
 
+import Controller.PatientObservations;
+
 /***
  * The concrete patient factory class, this creates the patients.
  *
@@ -18,22 +20,18 @@ public class ConcretePatientFactory implements PatientFactory {
      * @param gender Patient's gender.
      * @param birthDate Patient's birth date.
      * @param address Patient's address.
+     * @param observations Patient's cholesterol and blood pressure observations, null if there are none.
      * @return a new patient with the given details.
      */
     public AppPatient createPatient(String id, String name, String gender, String birthDate,
-                                    String address, String cholesterol, String effectiveTimeDateCholesterol,
-                                    String[] diastolic,String[] systolic,String[] effectiveDateTimeBloodPressure) {
+                                    String address, PatientObservations observations) {
         AppPatient patient = new AppPatient();
         patient.setId(id);
         patient.setName(name);
         patient.setGender(gender);
         patient.setBirthDate(birthDate);
         patient.setAddress(address);
-        patient.setCholesterolLevel(cholesterol);
-        patient.setEffectiveDateTimeCholesterol(effectiveTimeDateCholesterol);
-        patient.setDiastolicBloodPressure(diastolic);
-        patient.setSystolicBloodPressure(systolic);
-        patient.setEffectiveDateTimeBloodPressure(effectiveDateTimeBloodPressure);
+        patient.setObservations(observations);
         return patient;
     }
 }
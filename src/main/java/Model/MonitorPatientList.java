@@ -1,104 +1,246 @@
 package Model;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
- *  List implementation for practitioner's monitored patients.
+ *  List implementation for practitioner's monitored patients. The statistics of the cholesterol levels and the latest
+ *  blood pressures are kept up to date whenever a patient is added, removed or updated.
  *
  * @author Kenneth Huynh
  */
 public class MonitorPatientList extends PatientList {
 
-    // Instance variables
-    private float totalCholesterol;
-    private float averageCholesterol;
-    private int patientsNotYetMeasured;
+    // Expected ranges of the values, used for the histograms of the statistics
+    private static final double MAX_CHOLESTEROL = 1000;
+    private static final double MAX_BLOOD_PRESSURE = 300;
+
+    // Instance variables, shared with the copies of the list
+    private final StreamingStatistics cholesterolStatistics;
+    private final StreamingStatistics systolicStatistics;
+    private final StreamingStatistics diastolicStatistics;
+
+    // The values each patient currently contributes to the statistics
+    private final Map<String, Readings> readings;
+
+    // Ids of the patients whose values changed since the changed rows were last taken
+    private final Set<String> changedPatients;
 
     /**
-     *  Setup needed the total and average cholesterol for future calculation.
+     *  Setup needed the statistics for future calculation.
      */
     public MonitorPatientList() {
         super();
 
-        patients = new ArrayList<AppPatient>();
-        totalCholesterol = 0;
-        averageCholesterol = 0;
-        patientsNotYetMeasured = 0;
+        cholesterolStatistics = new StreamingStatistics(0, MAX_CHOLESTEROL, (int) MAX_CHOLESTEROL);
+        systolicStatistics = new StreamingStatistics(0, MAX_BLOOD_PRESSURE, (int) MAX_BLOOD_PRESSURE);
+        diastolicStatistics = new StreamingStatistics(0, MAX_BLOOD_PRESSURE, (int) MAX_BLOOD_PRESSURE);
+        readings = new HashMap<String, Readings>();
+        changedPatients = new HashSet<String>();
     }
 
     /**
      *  Copy constructor.
      */
     public MonitorPatientList(MonitorPatientList monitorPatientList) {
-        super();
+        super(monitorPatientList);
 
-        patients = monitorPatientList.patients;
-        totalCholesterol = monitorPatientList.totalCholesterol;
-        averageCholesterol = monitorPatientList.averageCholesterol;
+        cholesterolStatistics = monitorPatientList.cholesterolStatistics;
+        systolicStatistics = monitorPatientList.systolicStatistics;
+        diastolicStatistics = monitorPatientList.diastolicStatistics;
+        readings = monitorPatientList.readings;
+        changedPatients = monitorPatientList.changedPatients;
     }
 
     /**
-     *  Appends a patient to the patient list and updates the cholesterol statistics.
+     *  Appends a patient to the patient list and updates the statistics.
      *
      *  @param patient: The patient to be appended onto the patient list
      *  @return If the addition of the patient was possible
      */
     @Override
     public boolean append(Object patient) {
-        if (patients.contains((AppPatient) patient)) {
+        if (contains(patient)) {
             return false;
         } else {
-            patients.add((AppPatient) patient);
-
-            // Update total and average cholesterol
-            if (!((AppPatient) patient).getCholesterolLevel().equals("N/A")) {
-                totalCholesterol += Float.parseFloat(((AppPatient) patient).getCholesterolLevel());
-                averageCholesterol = totalCholesterol / (this.count() - patientsNotYetMeasured);
-            } else {
-                patientsNotYetMeasured++;
-            }
+            super.append(patient);
+
+            Readings patientReadings = new Readings((AppPatient) patient);
+            readings.put(((AppPatient) patient).getId(), patientReadings);
+            addReadings(patientReadings);
 
             return true;
         }
     }
 
     /**
-     *  Removes a patient from the patient list and updates the cholesterol statistics.
+     *  Removes a patient from the patient list and updates the statistics.
      *
      *  @param patient:  The patient to be removed from the patient list
      *  @return If the removal of the patient was possible
      */
     @Override
     public boolean remove(Object patient) {
-        if (patients.contains((AppPatient) patient)) {
-            patients.remove((AppPatient) patient);
-
-            // Update total and average cholesterol
-            if (!((AppPatient) patient).getCholesterolLevel().equals("N/A")) {
-                totalCholesterol -= Float.parseFloat(((AppPatient) patient).getCholesterolLevel());
-                if (totalCholesterol > 0) {
-                    averageCholesterol = totalCholesterol / (this.count() - patientsNotYetMeasured);
-                } else {
-                    // If precision of parse is not good enough
-                    totalCholesterol = 0;
-                    averageCholesterol = 0;
-                }
-            } else {
-                patientsNotYetMeasured--;
-            }
-
+        if (super.remove(patient)) {
+            removeReadings(readings.remove(((AppPatient) patient).getId()));
+            changedPatients.remove(((AppPatient) patient).getId());
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     *  Updates the statistics after the values of a monitored patient may have changed. The patient is marked as
+     *  changed if its values are different.
+     *
+     *  @param patient: The patient whose values may have changed
+     *  @return If the values of the patient have changed
+     */
+    public boolean update(AppPatient patient) {
+        if (!contains(patient)) {
+            return false;
+        }
+
+        Readings patientReadings = new Readings(patient);
+        Readings previousReadings = readings.get(patient.getId());
+        if (patientReadings.equals(previousReadings)) {
+            return false;
+        }
+
+        readings.put(patient.getId(), patientReadings);
+        removeReadings(previousReadings);
+        addReadings(patientReadings);
+        changedPatients.add(patient.getId());
+        return true;
+    }
+
+    /**
+     *  Marks a monitored patient as changed, such as when its details have changed.
+     *
+     *  @param patient: The changed patient
+     */
+    public void markChanged(AppPatient patient) {
+        if (contains(patient)) {
+            changedPatients.add(patient.getId());
+        }
+    }
+
+    /**
+     *  Returns the rows of the patients that changed since the last call, and clears them.
+     *
+     *  @return The indices of the changed patients
+     */
+    public BitSet takeChangedRows() {
+        BitSet rows = new BitSet(count());
+        for (String patientID : changedPatients) {
+            int index = indexOfId(patientID);
+            if (index != -1) {
+                rows.set(index);
+            }
+        }
+        changedPatients.clear();
+        return rows;
+    }
+
     /**
      *  Getter for the average cholesterol statistic.
      *
      *  @return The average cholesterol value
      */
     public float getAverageCholesterol() {
-        return averageCholesterol;
+        return (float) cholesterolStatistics.getMean();
+    }
+
+    /**
+     *  Getter for the statistics of the cholesterol levels of the measured patients.
+     */
+    public StreamingStatistics getCholesterolStatistics() {
+        return cholesterolStatistics;
+    }
+
+    /**
+     *  Getter for the statistics of the latest systolic blood pressures of the measured patients.
+     */
+    public StreamingStatistics getSystolicStatistics() {
+        return systolicStatistics;
+    }
+
+    /**
+     *  Getter for the statistics of the latest diastolic blood pressures of the measured patients.
+     */
+    public StreamingStatistics getDiastolicStatistics() {
+        return diastolicStatistics;
+    }
+
+    /**
+     *  Adds the values of a patient to the statistics.
+     */
+    private void addReadings(Readings patientReadings) {
+        if (patientReadings.hasCholesterol) {
+            cholesterolStatistics.add(patientReadings.cholesterol);
+        }
+        if (patientReadings.hasBloodPressure) {
+            systolicStatistics.add(patientReadings.systolic);
+            diastolicStatistics.add(patientReadings.diastolic);
+        }
+    }
+
+    /**
+     *  Removes the values of a patient from the statistics.
+     */
+    private void removeReadings(Readings patientReadings) {
+        if (patientReadings.hasCholesterol) {
+            cholesterolStatistics.remove(patientReadings.cholesterol);
+        }
+        if (patientReadings.hasBloodPressure) {
+            systolicStatistics.remove(patientReadings.systolic);
+            diastolicStatistics.remove(patientReadings.diastolic);
+        }
+    }
+
+    /**
+     *  The values a patient contributed to the statistics when it was last added or updated.
+     */
+    private static class Readings {
+        private final boolean hasCholesterol;
+        private final float cholesterol;
+        private final boolean hasBloodPressure;
+        private final float systolic;
+        private final float diastolic;
+
+        // Only used to tell if the readings have changed
+        private final long cholesterolTime;
+        private final long bloodPressureTime;
+
+        private Readings(AppPatient patient) {
+            hasCholesterol = patient.hasCholesterol();
+            cholesterol = patient.getCholesterolValue();
+            cholesterolTime = patient.getCholesterolTime();
+            hasBloodPressure = patient.getBloodPressureCount() > 0;
+            systolic = hasBloodPressure ? patient.getSystolic(0) : 0;
+            diastolic = hasBloodPressure ? patient.getDiastolic(0) : 0;
+            bloodPressureTime = hasBloodPressure ? patient.getBloodPressureTime(0) : 0;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Readings)) {
+                return false;
+            }
+            Readings other = (Readings) object;
+            return hasCholesterol == other.hasCholesterol && cholesterol == other.cholesterol
+                    && cholesterolTime == other.cholesterolTime && hasBloodPressure == other.hasBloodPressure
+                    && systolic == other.systolic && diastolic == other.diastolic
+                    && bloodPressureTime == other.bloodPressureTime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Float.floatToIntBits(cholesterol) * 31 + Float.floatToIntBits(systolic);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package Model;
 import Model.AppPatient;
+import Controller.PatientObservations;
 
 /***
  * The abstract patient factory class.
@@ -9,6 +10,5 @@ import Model.AppPatient;
 
 public interface PatientFactory {
     public AppPatient createPatient(String id, String name, String gender, String birthDate,
-                                    String address, String cholesterol, String effectiveTimeDateCholesterol,
-                                    String[] diastolic,String[] systolic,String[] effectiveDateTimeBloodPressure);
+                                    String address, PatientObservations observations);
 }
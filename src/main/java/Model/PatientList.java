@@ -1,20 +1,19 @@
 package Model;
 
-import java.util.ArrayList;
-
 /**
  *  List implementation for practitioner's patients.
  *
  * @author Kenneth Huynh
  */
 public class PatientList implements AbstractList {
-    ArrayList<AppPatient> patients;
+    // Hash indexed storage, shared with the copies of the list
+    PatientStore patients;
 
     /**
      *  Setup patient list.
      */
     public PatientList() {
-        patients = new ArrayList<AppPatient>();
+        patients = new PatientStore();
     }
 
     /**
@@ -60,12 +59,7 @@ public class PatientList implements AbstractList {
      *  @return If the removal of the patient was possible
      */
     public boolean remove(Object patient) {
-        if (patients.contains((AppPatient) patient)) {
-            return false;
-        } else {
-            patients.remove((AppPatient) patient);
-            return true;
-        }
+        return patients.remove((AppPatient) patient);
     }
 
     /**
@@ -76,9 +70,49 @@ public class PatientList implements AbstractList {
      */
     public int indexOf(Object patient) {
         if (patients.contains((AppPatient) patient)) {
-            return patients.indexOf((AppPatient) patient);
+            return patients.indexOf(((AppPatient) patient).getId());
         }
 
         return -1;  // If not found in list
     }
+
+    /**
+     *  Checks if the patient is in the list.
+     *
+     *  @param patient:  The patient to be checked
+     *  @return If the patient is within the list
+     */
+    public boolean contains(Object patient) {
+        return patients.contains((AppPatient) patient);
+    }
+
+    /**
+     *  Finds the index of the patient with the given id in the list.
+     *
+     *  @param patientID:  The id of the patient
+     *  @return The index of the patient within the list, or -1 if not found
+     */
+    public int indexOfId(String patientID) {
+        return patients.indexOf(patientID);
+    }
+
+    /**
+     *  Returns the patient at a position of the list.
+     *
+     *  @param index:  The position of the patient
+     *  @return The patient at the position
+     */
+    public AppPatient get(int index) {
+        return patients.get(index);
+    }
+
+    /**
+     *  Returns the patient with the given id.
+     *
+     *  @param patientID:  The id of the patient
+     *  @return The patient, or null if not found
+     */
+    public AppPatient getById(String patientID) {
+        return patients.getById(patientID);
+    }
 }
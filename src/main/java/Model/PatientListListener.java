@@ -0,0 +1,11 @@
+package Model;
+
+/**
+ * The listener interface for changes to the practitioner's list of patients that happen after it was first shown,
+ * such as patients retrieved in the background.
+ */
+
+public interface PatientListListener {
+    public void patientsAdded(int firstIndex, int lastIndex);
+    public void patientsUpdated(int firstIndex, int lastIndex);
+}
@@ -0,0 +1,244 @@
+package Model;
+
+import Controller.FHIRAPI;
+import Controller.PatientObservations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Loads the practitioner's patients concurrently. The information and the observations of the patients are resolved in
+ * batches, and every batch call is submitted to a fixed size pool, so the amount of requests in flight never goes above
+ * the concurrency limit. The patients are still created through the factory in the same order as the given ids.
+ */
+public class PatientLoader {
+    // Default amount of requests in flight
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private final FHIRAPI api;
+    private final PatientFactory factory;
+    private final int concurrency;
+
+    // Cleared once any page, chunk or observations of the last load could not be retrieved
+    private boolean complete;
+
+    /**
+     * Creates a loader with the default concurrency limit.
+     * @param api The api used for the calls.
+     */
+    public PatientLoader(FHIRAPI api) {
+        this(api, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Creates a loader with a specific concurrency limit.
+     * @param api The api used for the calls.
+     * @param concurrency The maximum amount of requests in flight, must be positive.
+     */
+    public PatientLoader(FHIRAPI api, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.api = api;
+        this.factory = new ConcretePatientFactory();
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Retrieves the practitioner's patients while their encounters are still being paged through. The patients of each
+     * page start loading as soon as the page arrives, and every chunk of patients is handed over once it is created.
+     * @param chunkConsumer Receives each chunk of created patients, in encounter order.
+     * @return All the created patients in encounter order, see isComplete for whether any are missing.
+     */
+    public ArrayList<AppPatient> streamPatients(final Consumer<List<AppPatient>> chunkConsumer) {
+        final ArrayList<AppPatient> patients = new ArrayList<AppPatient>();
+        final ArrayDeque<ChunkLoad> pending = new ArrayDeque<ChunkLoad>();
+        complete = true;
+
+        final ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            boolean allPages = api.streamPatientIDs(new Consumer<List<String>>() {
+                public void accept(List<String> patientIDs) {
+                    submitChunks(pool, patientIDs, pending);
+
+                    // Hand over the chunks that have already finished without waiting for the rest
+                    while (!pending.isEmpty() && pending.peek().isDone()) {
+                        handOver(pool, pending.poll(), patients, chunkConsumer);
+                    }
+                }
+            });
+            if (!allPages) {
+                complete = false;
+            }
+
+            while (!pending.isEmpty()) {
+                handOver(pool, pending.poll(), patients, chunkConsumer);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("Loaded " + patients.size() + " patients with " + concurrency + " requests in flight"
+                + (complete ? "" : ", some could not be retrieved"));
+        return patients;
+    }
+
+    /**
+     * Whether the last load retrieved every patient and all their observations. Patients or observations that could
+     * not be retrieved are left out of the load, so an incomplete load should not replace a complete one.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Splits the ids into chunks and submits the information and observation calls of every chunk.
+     * @param pool The pool the calls are submitted to.
+     * @param patientIDs The ids of the patients.
+     * @param pending The queue the submitted chunks are added to, in order.
+     */
+    private void submitChunks(ExecutorService pool, List<String> patientIDs, ArrayDeque<ChunkLoad> pending) {
+        final int batchSize = api.getBatchSize();
+        for (int start = 0; start < patientIDs.size(); start += batchSize) {
+            final List<String> chunk =
+                    new ArrayList<String>(patientIDs.subList(start, Math.min(start + batchSize, patientIDs.size())));
+            Future<Map<String, String[]>> infoCall = pool.submit(new Callable<Map<String, String[]>>() {
+                public Map<String, String[]> call() {
+                    return api.getPatientInfoBatch(chunk);
+                }
+            });
+            Future<Map<String, PatientObservations>> observationCall =
+                    pool.submit(new Callable<Map<String, PatientObservations>>() {
+                        public Map<String, PatientObservations> call() {
+                            return api.getObservationsBatch(chunk);
+                        }
+                    });
+            pending.add(new ChunkLoad(chunk, infoCall, observationCall));
+        }
+    }
+
+    /**
+     * Creates the patients of a finished chunk and hands them over. A chunk that failed is left out.
+     */
+    private void handOver(ExecutorService pool, ChunkLoad chunk, List<AppPatient> patients,
+                          Consumer<List<AppPatient>> chunkConsumer) {
+        List<AppPatient> chunkPatients;
+        try {
+            chunkPatients = assemble(pool, chunk);
+        }
+        catch (RuntimeException e) {
+            System.out.println("Could not load " + chunk.patientIDs.size() + " patients: " + e.getMessage());
+            complete = false;
+            return;
+        }
+        patients.addAll(chunkPatients);
+        chunkConsumer.accept(chunkPatients);
+    }
+
+    /**
+     * Waits for the calls of a chunk and creates its patients in the order of the ids. Patients not returned by the
+     * information search are read one by one on the pool, and a patient that cannot be read is left out.
+     * @param pool The pool the reads of missing patients are submitted to.
+     * @param chunk The submitted chunk.
+     * @return The created patients.
+     */
+    private List<AppPatient> assemble(ExecutorService pool, ChunkLoad chunk) {
+        Map<String, String[]> info = await(chunk.infoCall);
+        Map<String, PatientObservations> observations = await(chunk.observationCall);
+
+        // Not returned by the search, fall back to reading the patients directly
+        Map<String, Future<String[]>> infoReads = new HashMap<String, Future<String[]>>();
+        for (final String patientID : chunk.patientIDs) {
+            if (!info.containsKey(patientID)) {
+                infoReads.put(patientID, pool.submit(new Callable<String[]>() {
+                    public String[] call() {
+                        return api.getPatientInfo(patientID);
+                    }
+                }));
+            }
+        }
+
+        List<AppPatient> patients = new ArrayList<AppPatient>(chunk.patientIDs.size());
+        for (String patientID : chunk.patientIDs) {
+            String[] patientInfo = info.get(patientID);
+            if (patientInfo == null) {
+                try {
+                    patientInfo = await(infoReads.get(patientID));
+                }
+                catch (RuntimeException e) {
+                    System.out.println("Could not load patient " + patientID + ": " + e.getMessage());
+                    complete = false;
+                    continue;
+                }
+            }
+            PatientObservations patientObservations = observations.get(patientID);
+            if (patientObservations == null) {
+                // The observations of the patient's chunk could not be retrieved
+                complete = false;
+            }
+            patients.add(createPatient(patientInfo, patientObservations));
+        }
+        return patients;
+    }
+
+    /**
+     * Creates a patient out of the results of the api calls.
+     * @param info The result of the patient information call.
+     * @param observations The observations of the patient, null if they could not be retrieved.
+     * @return The created patient.
+     */
+    private AppPatient createPatient(String[] info, PatientObservations observations) {
+        return factory.createPatient(info[0], info[1], info[2], info[3], info[4], observations);
+    }
+
+    /**
+     * Waits for a call to finish, rethrowing any failure of the call itself.
+     * @param call The submitted call.
+     * @return The result of the call.
+     */
+    private static <T> T await(Future<T> call) {
+        try {
+            return call.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading patients", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The calls submitted for one chunk of patients.
+     */
+    private static class ChunkLoad {
+        private final List<String> patientIDs;
+        private final Future<Map<String, String[]>> infoCall;
+        private final Future<Map<String, PatientObservations>> observationCall;
+
+        private ChunkLoad(List<String> patientIDs, Future<Map<String, String[]>> infoCall,
+                          Future<Map<String, PatientObservations>> observationCall) {
+            this.patientIDs = patientIDs;
+            this.infoCall = infoCall;
+            this.observationCall = observationCall;
+        }
+
+        private boolean isDone() {
+            return infoCall.isDone() && observationCall.isDone();
+        }
+    }
+}
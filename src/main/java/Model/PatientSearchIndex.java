@@ -0,0 +1,270 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *  Search index over the names, ids and addresses of the practitioner's patients, kept up to date as the patients are
+ *  loaded. Queries of one or two characters match the start of any word, longer queries match anywhere in the text.
+ *  Every word prefix of one and two characters and every trigram of the text is mapped to the sorted positions of the
+ *  patients containing it, so a query only looks at the patients sharing all its trigrams instead of the whole list.
+ *
+ *  Patients are identified by their position in the patient list, which only ever grows.
+ */
+public class PatientSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    // Positions by word prefix or trigram
+    private final Map<String, Postings> postings;
+
+    // Searched text of each patient, used to drop candidates whose trigrams are not next to each other
+    private final ArrayList<String> texts;
+
+    /**
+     *  Setup empty index.
+     */
+    public PatientSearchIndex() {
+        postings = new HashMap<String, Postings>();
+        texts = new ArrayList<String>();
+    }
+
+    /**
+     *  Returns the amount of indexed patients.
+     */
+    public int count() {
+        return texts.size();
+    }
+
+    /**
+     *  Indexes a patient appended to the patient list.
+     *
+     *  @param patient: The patient, at the position after the last indexed one
+     */
+    public void add(AppPatient patient) {
+        String text = textOf(patient);
+        texts.add(text);
+        addGrams(texts.size() - 1, text);
+    }
+
+    /**
+     *  Indexes the changed details of a patient. The grams of the previous details are left behind, they are filtered
+     *  out when searching.
+     *
+     *  @param position: The position of the patient in the patient list
+     *  @param patient:  The patient
+     */
+    public void update(int position, AppPatient patient) {
+        String text = textOf(patient);
+        if (!text.equals(texts.get(position))) {
+            texts.set(position, text);
+            addGrams(position, text);
+        }
+    }
+
+    /**
+     *  Finds the patients matching a query, ignoring case.
+     *
+     *  @param query: The searched text
+     *  @return The positions of the matching patients in list order, or every position if the query is blank
+     */
+    public int[] search(String query) {
+        String normalized = query.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) {
+            int[] all = new int[texts.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        if (normalized.length() < GRAM_LENGTH) {
+            return filter(postings.get(normalized), normalized);
+        }
+
+        // Intersects the positions of every trigram, starting with the rarest
+        Set<String> grams = new HashSet<String>();
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM_LENGTH));
+        }
+        Postings[] lists = new Postings[grams.size()];
+        int listCount = 0;
+        for (String gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists[listCount++] = list;
+        }
+        Arrays.sort(lists, Postings.BY_SIZE);
+
+        int[] candidates = Arrays.copyOf(lists[0].positions, lists[0].size);
+        int candidateCount = candidates.length;
+        for (int i = 1; i < lists.length && candidateCount > 0; i++) {
+            candidateCount = lists[i].retain(candidates, candidateCount);
+        }
+
+        int matchCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            if (texts.get(candidates[i]).contains(normalized)) {
+                candidates[matchCount++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matchCount);
+    }
+
+    /**
+     *  Keeps the positions whose current text still has a word starting with the query.
+     */
+    private int[] filter(Postings list, String prefix) {
+        if (list == null) {
+            return new int[0];
+        }
+        int[] matches = new int[list.size];
+        int matchCount = 0;
+        for (int i = 0; i < list.size; i++) {
+            if (hasWordStartingWith(texts.get(list.positions[i]), prefix)) {
+                matches[matchCount++] = list.positions[i];
+            }
+        }
+        return Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     *  Adds the word prefixes and trigrams of a text.
+     */
+    private void addGrams(int position, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (isWordStart(text, i)) {
+                addGram(text.substring(i, i + 1), position);
+                if (i + 1 < text.length() && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    addGram(text.substring(i, i + 2), position);
+                }
+            }
+            if (i + GRAM_LENGTH <= text.length()) {
+                String gram = text.substring(i, i + GRAM_LENGTH);
+                // Grams across two fields can never be searched for
+                if (gram.indexOf('\n') < 0) {
+                    addGram(gram, position);
+                }
+            }
+        }
+    }
+
+    private void addGram(String gram, int position) {
+        Postings list = postings.get(gram);
+        if (list == null) {
+            list = new Postings();
+            postings.put(gram, list);
+        }
+        list.add(position);
+    }
+
+    /**
+     *  Checks if any word of a text starts with a prefix.
+     */
+    private static boolean hasWordStartingWith(String text, String prefix) {
+        int index = text.indexOf(prefix);
+        while (index >= 0) {
+            if (isWordStart(text, index)) {
+                return true;
+            }
+            index = text.indexOf(prefix, index + 1);
+        }
+        return false;
+    }
+
+    private static boolean isWordStart(String text, int index) {
+        return Character.isLetterOrDigit(text.charAt(index))
+                && (index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1)));
+    }
+
+    /**
+     *  Returns the searched text of a patient, its fields in lower case on separate lines.
+     */
+    private static String textOf(AppPatient patient) {
+        StringBuilder text = new StringBuilder();
+        text.append(patient.getName() == null ? "" : patient.getName()).append('\n');
+        text.append(patient.getId() == null ? "" : patient.getId()).append('\n');
+        text.append(patient.getAddress() == null ? "" : patient.getAddress());
+        return text.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     *  Sorted positions of the patients containing a gram, without duplicates.
+     */
+    private static class Postings {
+        private static final Comparator<Postings> BY_SIZE = new Comparator<Postings>() {
+            public int compare(Postings first, Postings second) {
+                return Integer.compare(first.size, second.size);
+            }
+        };
+
+        private int[] positions = new int[2];
+        private int size;
+
+        /**
+         *  Adds a position, usually after the last one since patients are indexed in list order.
+         */
+        private void add(int position) {
+            if (size > 0 && positions[size - 1] >= position) {
+                int index = Arrays.binarySearch(positions, 0, size, position);
+                if (index >= 0) {
+                    return;
+                }
+                insert(-index - 1, position);
+                return;
+            }
+            insert(size, position);
+        }
+
+        private void insert(int index, int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            System.arraycopy(positions, index, positions, index + 1, size - index);
+            positions[index] = position;
+            size++;
+        }
+
+        /**
+         *  Keeps the sorted candidates that are also in this list.
+         *
+         *  @return The amount of candidates kept at the start of the array
+         */
+        private int retain(int[] candidates, int candidateCount) {
+            int kept = 0;
+            int from = 0;
+            if (size < candidateCount * 16) {
+                // Lists of similar size are walked side by side
+                for (int i = 0; i < candidateCount && from < size; i++) {
+                    while (from < size && positions[from] < candidates[i]) {
+                        from++;
+                    }
+                    if (from < size && positions[from] == candidates[i]) {
+                        candidates[kept++] = candidates[i];
+                        from++;
+                    }
+                }
+                return kept;
+            }
+
+            // Far longer lists are binary searched for each candidate
+            for (int i = 0; i < candidateCount && from < size; i++) {
+                int index = Arrays.binarySearch(positions, from, size, candidates[i]);
+                if (index >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return kept;
+        }
+    }
+}
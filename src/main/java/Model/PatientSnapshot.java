@@ -0,0 +1,163 @@
+package Model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import Controller.PatientObservations;
+
+/**
+ * A compact binary copy of a practitioner's patients stored on disk, so that the dashboard can be shown straight away
+ * on the next login while the patients are retrieved from the server again. The snapshots are kept in the directory
+ * given by the fhir.snapshot.dir system property, or in .fhir-monitor within the user's home directory.
+ */
+public class PatientSnapshot {
+    // Identifies the file format, the version is changed whenever the layout changes
+    private static final int MAGIC = 0x46484952;
+    private static final int VERSION = 2;
+
+    private final File file;
+
+    /**
+     * Creates the snapshot of a specific practitioner.
+     * @param practitionerID The id of the practitioner.
+     */
+    public PatientSnapshot(String practitionerID) {
+        File directory = new File(System.getProperty("fhir.snapshot.dir",
+                System.getProperty("user.home") + File.separator + ".fhir-monitor"));
+        this.file = new File(directory, "patients-" + practitionerID.replaceAll("[^A-Za-z0-9.-]", "_") + ".bin");
+    }
+
+    /**
+     * Loads the patients of the snapshot.
+     * @return The patients in the order they were saved, or null if there is no usable snapshot.
+     */
+    public ArrayList<AppPatient> load() {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        PatientFactory factory = new ConcretePatientFactory();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.println("Ignoring outdated patient snapshot");
+                return null;
+            }
+
+            int count = in.readInt();
+            ArrayList<AppPatient> patients = new ArrayList<AppPatient>(count);
+            for (int i = 0; i < count; i++) {
+                patients.add(factory.createPatient(readString(in), readString(in), readString(in), readString(in),
+                        readString(in), readObservations(in)));
+            }
+
+            System.out.println("Loaded " + count + " patients from snapshot");
+            return patients;
+        }
+        catch (IOException e) {
+            System.out.println("Could not read patient snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the patients into the snapshot, replacing the previous one.
+     * @param patients The patients to be saved.
+     */
+    public void save(List<AppPatient> patients) {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.out.println("Could not create snapshot directory: " + directory);
+            return;
+        }
+
+        // Written to a temporary file first, so a failed save never leaves a broken snapshot behind
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(patients.size());
+                for (AppPatient patient : patients) {
+                    writeString(out, patient.getId());
+                    writeString(out, patient.getName());
+                    writeString(out, patient.getGender());
+                    writeString(out, patient.getBirthDate());
+                    writeString(out, patient.getAddress());
+                    writeObservations(out, patient);
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Saved " + patients.size() + " patients to snapshot");
+        }
+        catch (IOException e) {
+            System.out.println("Could not save patient snapshot: " + e.getMessage());
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Writes a string which may be null.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string which may be null.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes the cholesterol and blood pressure readings of a patient as primitives.
+     */
+    private static void writeObservations(DataOutputStream out, AppPatient patient) throws IOException {
+        out.writeBoolean(patient.hasCholesterol());
+        out.writeFloat(patient.getCholesterolValue());
+        out.writeLong(patient.getCholesterolTime());
+        out.writeByte(patient.getBloodPressureCount());
+        for (int i = 0; i < patient.getBloodPressureCount(); i++) {
+            out.writeFloat(patient.getDiastolic(i));
+            out.writeFloat(patient.getSystolic(i));
+            out.writeLong(patient.getBloodPressureTime(i));
+        }
+    }
+
+    /**
+     * Reads the cholesterol and blood pressure readings written by writeObservations.
+     */
+    private static PatientObservations readObservations(DataInputStream in) throws IOException {
+        boolean hasCholesterol = in.readBoolean();
+        float cholesterol = in.readFloat();
+        long cholesterolTime = in.readLong();
+
+        int count = in.readByte();
+        if (count < 0 || count > PatientObservations.BLOOD_PRESSURE_READINGS) {
+            throw new IOException("Invalid amount of blood pressure readings: " + count);
+        }
+        float[] diastolic = new float[count];
+        float[] systolic = new float[count];
+        long[] time = new long[count];
+        for (int i = 0; i < count; i++) {
+            diastolic[i] = in.readFloat();
+            systolic[i] = in.readFloat();
+            time[i] = in.readLong();
+        }
+        return new PatientObservations(null, hasCholesterol, cholesterol, cholesterolTime, count, diastolic, systolic,
+                time);
+    }
+}
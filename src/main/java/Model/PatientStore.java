@@ -0,0 +1,141 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  Insertion ordered storage of the patients of a patient list, with a hash index from patient id to slot. Removed
+ *  patients leave an empty slot behind, the slots are only compacted when a position is needed again, so removing
+ *  many patients in a row stays linear.
+ */
+class PatientStore {
+    private final ArrayList<AppPatient> slots;
+
+    // Slot of each patient by patient id
+    private final Map<String, Integer> slotIndices;
+
+    // Amount of empty slots left by removals
+    private int removedCount;
+
+    /**
+     *  Setup empty storage.
+     */
+    PatientStore() {
+        slots = new ArrayList<AppPatient>();
+        slotIndices = new HashMap<String, Integer>();
+        removedCount = 0;
+    }
+
+    /**
+     *  Returns the amount of stored patients.
+     *
+     *  @return The amount of patients
+     */
+    int size() {
+        return slots.size() - removedCount;
+    }
+
+    /**
+     *  Adds a patient after the last one.
+     *
+     *  @param patient: The patient to be added
+     */
+    void add(AppPatient patient) {
+        slotIndices.put(patient.getId(), slots.size());
+        slots.add(patient);
+    }
+
+    /**
+     *  Checks if the patient is stored, without compacting the slots.
+     *
+     *  @param patient: The patient to be checked
+     *  @return If the patient is stored
+     */
+    boolean contains(AppPatient patient) {
+        Integer slot = slotIndices.get(patient.getId());
+        return slot != null && slots.get(slot) == patient;
+    }
+
+    /**
+     *  Removes a patient, leaving its slot empty.
+     *
+     *  @param patient: The patient to be removed
+     *  @return If the patient was stored
+     */
+    boolean remove(AppPatient patient) {
+        if (!contains(patient)) {
+            return false;
+        }
+
+        int slot = slotIndices.remove(patient.getId());
+        slots.set(slot, null);
+        removedCount++;
+
+        // Empty slots at the end are dropped straight away
+        while (!slots.isEmpty() && slots.get(slots.size() - 1) == null) {
+            slots.remove(slots.size() - 1);
+            removedCount--;
+        }
+        return true;
+    }
+
+    /**
+     *  Returns the patient with the given id, without compacting the slots.
+     *
+     *  @param patientID: The id of the patient
+     *  @return The patient, or null if not found
+     */
+    AppPatient getById(String patientID) {
+        Integer slot = slotIndices.get(patientID);
+        return slot == null ? null : slots.get(slot);
+    }
+
+    /**
+     *  Returns the patient at a position.
+     *
+     *  @param index: The position of the patient
+     *  @return The patient at the position
+     */
+    AppPatient get(int index) {
+        compact();
+        return slots.get(index);
+    }
+
+    /**
+     *  Finds the position of the patient with the given id.
+     *
+     *  @param patientID: The id of the patient
+     *  @return The position of the patient, or -1 if not found
+     */
+    int indexOf(String patientID) {
+        Integer slot = slotIndices.get(patientID);
+        if (slot == null) {
+            return -1;
+        }
+
+        compact();
+        return slotIndices.get(patientID);
+    }
+
+    /**
+     *  Moves the patients over the empty slots, so that every slot is also the position of its patient.
+     */
+    private void compact() {
+        if (removedCount == 0) {
+            return;
+        }
+
+        int position = 0;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            AppPatient patient = slots.get(slot);
+            if (patient != null) {
+                slots.set(position, patient);
+                slotIndices.put(patient.getId(), position);
+                position++;
+            }
+        }
+        slots.subList(position, slots.size()).clear();
+        removedCount = 0;
+    }
+}
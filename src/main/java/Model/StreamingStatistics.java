@@ -0,0 +1,184 @@
+package Model;
+
+import java.util.Arrays;
+
+/**
+ *  Statistics of a changing set of values, kept up to date in constant time whenever a value is added or removed.
+ *  The mean and variance use Welford's algorithm in double precision, so they do not drift like a running total. A
+ *  fixed histogram over the expected range of the values is used to find the extremes again once one is removed.
+ */
+public class StreamingStatistics {
+    private final double low;
+    private final double binWidth;
+    private final int[] histogram;
+
+    private int count;
+    private double mean;
+    private double squaredDistances;   // Sum of squared distances from the mean
+
+    private double min;
+    private double max;
+
+    /**
+     *  Setup empty statistics.
+     *
+     *  @param low:  The lowest expected value, lower values are counted in the first bin
+     *  @param high: The highest expected value, higher values are counted in the last bin
+     *  @param bins: The amount of histogram bins used for the extremes
+     */
+    public StreamingStatistics(double low, double high, int bins) {
+        if (!(high > low) || bins <= 0) {
+            throw new IllegalArgumentException("Invalid histogram range: " + low + " to " + high + " in " + bins);
+        }
+        this.low = low;
+        this.binWidth = (high - low) / bins;
+        this.histogram = new int[bins];
+        clear();
+    }
+
+    /**
+     *  Removes all the values.
+     */
+    public void clear() {
+        count = 0;
+        mean = 0;
+        squaredDistances = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+        Arrays.fill(histogram, 0);
+    }
+
+    /**
+     *  Adds a value.
+     *
+     *  @param value: The value to be added
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDistances += delta * (value - mean);
+
+        histogram[bin(value)]++;
+        if (count == 1 || value < min) {
+            min = value;
+        }
+        if (count == 1 || value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     *  Removes a value that was previously added.
+     *
+     *  @param value: The value to be removed
+     */
+    public void remove(double value) {
+        if (count <= 1) {
+            clear();
+            return;
+        }
+
+        double delta = value - mean;
+        mean -= delta / (count - 1);
+        squaredDistances = Math.max(0, squaredDistances - delta * (value - mean));
+        count--;
+
+        // The extremes are found again in the histogram when one of them is removed
+        int bin = bin(value);
+        histogram[bin]--;
+        if (value <= min) {
+            min = Math.max(min, binStart(firstBin()));
+        }
+        if (value >= max) {
+            max = Math.min(max, binStart(lastBin() + 1));
+        }
+    }
+
+    /**
+     *  Getter for the amount of values.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     *  Getter for the mean, 0 if there are no values.
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     *  Getter for the sample variance, 0 if there are less than two values.
+     */
+    public double getVariance() {
+        return count > 1 ? squaredDistances / (count - 1) : 0;
+    }
+
+    /**
+     *  Getter for the sample standard deviation, 0 if there are less than two values.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     *  Getter for the lowest value, exact until it is removed and within a histogram bin afterwards.
+     *  NaN if there are no values.
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     *  Getter for the highest value, exact until it is removed and within a histogram bin afterwards.
+     *  NaN if there are no values.
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     *  Finds the histogram bin of a value.
+     */
+    private int bin(double value) {
+        int bin = (int) Math.floor((value - low) / binWidth);
+        return Math.max(0, Math.min(histogram.length - 1, bin));
+    }
+
+    /**
+     *  Returns the lowest value of a histogram bin.
+     */
+    private double binStart(int bin) {
+        return low + bin * binWidth;
+    }
+
+    /**
+     *  Returns the first histogram bin with values.
+     */
+    private int firstBin() {
+        int bin = 0;
+        while (histogram[bin] == 0) {
+            bin++;
+        }
+        return bin;
+    }
+
+    /**
+     *  Returns the last histogram bin with values.
+     */
+    private int lastBin() {
+        int bin = histogram.length - 1;
+        while (histogram[bin] == 0) {
+            bin--;
+        }
+        return bin;
+    }
+
+    @Override
+    public String toString() {
+        return "count " + count + ", mean " + mean + ", standard deviation " + getStandardDeviation() + ", min " + min
+                + ", max " + max;
+    }
+}
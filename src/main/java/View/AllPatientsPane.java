@@ -1,12 +1,11 @@
 package View;
 
-import Model.AppPatient;
 import Model.PatientList;
-import Model.PatientListIterator;
+import Model.PatientListListener;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionListener;
 
@@ -16,13 +15,14 @@ import java.awt.event.ActionListener;
  *
  *  @author Kenneth Huynh
  */
-public class AllPatientsPane extends JPanel {
+public class AllPatientsPane extends JPanel implements PatientListListener {
     // View.GUI Home page
     private final JButton ADD_PATIENT_BUTTON;
     private final JButton REMOVE_PATIENT_BUTTON;
 
-    private DefaultTableModel allPatientsTableModel;
+    private AllPatientsTableModel allPatientsTableModel;
     private JTable allPatientsTable;
+    private final JTextField SEARCH_FIELD;
 
     // List of patients
     private final PatientList ALL_PATIENTS;
@@ -47,6 +47,13 @@ public class AllPatientsPane extends JPanel {
         title.setAlignmentX(Component.CENTER_ALIGNMENT);
         this.add(title);
 
+        // Search box
+        SEARCH_FIELD = new JTextField();
+        SEARCH_FIELD.setToolTipText("Search by name, id or address");
+        SEARCH_FIELD.setMaximumSize(new Dimension(Integer.MAX_VALUE, SEARCH_FIELD.getPreferredSize().height));
+        SEARCH_FIELD.setAlignmentX(Component.CENTER_ALIGNMENT);
+        this.add(SEARCH_FIELD);
+
         // Add patient table
         createAllPatientsTable();
 
@@ -73,31 +80,9 @@ public class AllPatientsPane extends JPanel {
      *  Creates the table of all practitioner's patients.
      */
     public void createAllPatientsTable() {
-        // Patient table column headings
-        String[] columnNames = {"Name"};
-
-        // Set up table data
-        allPatientsTableModel = new DefaultTableModel(columnNames, 0);
-        PatientListIterator patientListIterator = ALL_PATIENTS.createIterator();
-        while (!patientListIterator.isDone()) {
-            // Add patient name to the table
-            AppPatient patient = patientListIterator.currentItem();
-            Object[] row = {patient.getName()};
-            allPatientsTableModel.addRow(row);
-
-            // Check if the index can be incremented
-            if (!patientListIterator.isDone()) {
-                patientListIterator.next(); // increment
-            }
-        }
-
-        allPatientsTable = new JTable(allPatientsTableModel) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                // Disables cell editing
-                return false;
-            }
-        };
+        // Set up table data, the names are read from the patient list as the rows are shown
+        allPatientsTableModel = new AllPatientsTableModel(ALL_PATIENTS);
+        allPatientsTable = new JTable(allPatientsTableModel);
 
         // Setup table
         allPatientsTable.getTableHeader().setReorderingAllowed(false); // Disables column dragging
@@ -112,6 +97,58 @@ public class AllPatientsPane extends JPanel {
         this.add(scrollPane);
     }
 
+    /**
+     *  Adds the rows of patients appended to the list after the table was created.
+     *
+     *  @param firstIndex: The index of the first new patient
+     *  @param lastIndex:  The index of the last new patient
+     */
+    public void patientsAdded(int firstIndex, int lastIndex) {
+        allPatientsTableModel.patientsAppended(lastIndex);
+    }
+
+    /**
+     *  Updates the rows of patients whose details have changed.
+     *
+     *  @param firstIndex: The index of the first changed patient
+     *  @param lastIndex:  The index of the last changed patient
+     */
+    public void patientsUpdated(int firstIndex, int lastIndex) {
+        allPatientsTableModel.patientsUpdated(firstIndex, lastIndex);
+    }
+
+    /**
+     *  Shows only the patients matching the search.
+     *
+     *  @param patientIndices: The indices of the matching patients in the list
+     */
+    public void showMatchingPatients(int[] patientIndices) {
+        allPatientsTableModel.showMatches(patientIndices);
+    }
+
+    /**
+     *  Shows all the patients again once the search is cleared.
+     */
+    public void showAllPatients() {
+        allPatientsTableModel.showAll();
+    }
+
+    /**
+     * Gets the text typed in the search box.
+     * @return The searched text
+     */
+    public String getSearchText() {
+        return SEARCH_FIELD.getText();
+    }
+
+    /**
+     * Adds listener for the search box.
+     * @param listener The listener class used to search the patients as the search text changes.
+     */
+    public void addPatientSearchListener(DocumentListener listener) {
+        SEARCH_FIELD.getDocument().addDocumentListener(listener);
+    }
+
     /**
      * Adds listener for the adding patient button.
      * @param listener The listener class used to control the adding patients button's action.
@@ -130,9 +167,10 @@ public class AllPatientsPane extends JPanel {
 
     /**
      * Gets the selected row within the All Patients Table.
-     * @return The index of the selected row
+     * @return The index in the patient list of the selected patient, or -1 if none is selected
      */
     public int getSelectedRowInAllPatientsTable() {
-        return allPatientsTable.getSelectedRow();
+        int row = allPatientsTable.getSelectedRow();
+        return row == -1 ? -1 : allPatientsTableModel.getPatientIndex(row);
     }
 }
@@ -0,0 +1,117 @@
+package View;
+
+import javax.swing.table.AbstractTableModel;
+
+import Model.PatientList;
+
+/**
+ *  Table model of all the practitioner's patients, backed directly by the patient list. The names are read from the
+ *  patients when they are painted, so no row is copied and the table opens at once however many patients there are.
+ *  Patients appended to the list only become rows once the table is told about them, so the table never sees a row
+ *  before its insert event. The table can be narrowed down to the patients matching a search.
+ */
+public class AllPatientsTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = {"Name"};
+
+    private final PatientList ALL_PATIENTS;
+    private int rowCount;
+
+    // Indices of the shown patients while searching, null when all patients are shown
+    private int[] matches;
+
+    /**
+     *  Sets up the table model with the patients already in the list.
+     *
+     *  @param allPatients: The patients shown by the table
+     */
+    public AllPatientsTableModel(PatientList allPatients) {
+        this.ALL_PATIENTS = allPatients;
+        this.rowCount = allPatients.count();
+    }
+
+    @Override
+    public int getRowCount() {
+        return matches == null ? rowCount : matches.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        // Disables cell editing
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return ALL_PATIENTS.get(getPatientIndex(row)).getName();
+    }
+
+    /**
+     *  Returns the index in the patient list of the patient shown in a row.
+     *
+     *  @param row: The row
+     *  @return The index of the patient
+     */
+    public int getPatientIndex(int row) {
+        return matches == null ? row : matches[row];
+    }
+
+    /**
+     *  Shows only some of the patients.
+     *
+     *  @param patientIndices: The indices of the patients to show, in list order
+     */
+    public void showMatches(int[] patientIndices) {
+        this.matches = patientIndices;
+        fireTableDataChanged();
+    }
+
+    /**
+     *  Shows all the patients again.
+     */
+    public void showAll() {
+        if (matches != null) {
+            matches = null;
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     *  Adds the rows of patients appended to the list, up to the last new patient.
+     *
+     *  @param lastIndex: The index of the last new patient
+     */
+    public void patientsAppended(int lastIndex) {
+        if (lastIndex < rowCount) {
+            return;
+        }
+        int firstIndex = rowCount;
+        rowCount = lastIndex + 1;
+        // While searching the new patients are shown once the search is run again
+        if (matches == null) {
+            fireTableRowsInserted(firstIndex, lastIndex);
+        }
+    }
+
+    /**
+     *  Tells the table that the details of some patients have changed.
+     *
+     *  @param firstIndex: The index of the first changed patient
+     *  @param lastIndex:  The index of the last changed patient
+     */
+    public void patientsUpdated(int firstIndex, int lastIndex) {
+        lastIndex = Math.min(lastIndex, rowCount - 1);
+        if (matches == null && firstIndex <= lastIndex) {
+            fireTableRowsUpdated(firstIndex, lastIndex);
+        }
+    }
+}
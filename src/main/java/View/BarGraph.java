@@ -2,20 +2,20 @@ package View;
 
 import Model.AppPatient;
 import Model.PatientList;
-import Model.PatientListIterator;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Collection;
 
 /**
  *  Creates the cholesterol bar graph panel so the practitioner can
- *  monitor their patients in a graphical form for an overall picture.
+ *  monitor their patients in a graphical form for an overall picture. The graph is built once, and its dataset is
+ *  updated in place when patients change.
  *
  *  @author Kenneth Huynh
  */
@@ -24,6 +24,9 @@ public class BarGraph extends JPanel {
     // List of patients
     private final PatientList MONITORED_PATIENTS;
 
+    // Cholesterol level of each patient, with the patient as both the series and the category
+    private final DefaultCategoryDataset DATASET;
+
     /**
      * Creates the bar graph panel of cholesterol values
      * @param monitoredPatients The patients currently monitored
@@ -36,14 +39,15 @@ public class BarGraph extends JPanel {
         this.MONITORED_PATIENTS = monitoredPatients;
 
         // Create Dataset
-        CategoryDataset dataset = createDataset();
+        this.DATASET = new DefaultCategoryDataset();
+        reload();
 
         //Create chart
         JFreeChart chart= ChartFactory.createBarChart(
                 "Total Cholesterol (mg/dL)", //Chart Title
                 "Patients", // Category axis
                 "Cholesterol Levels", // Value axis
-                dataset,
+                DATASET,
                 PlotOrientation.VERTICAL,
                 true,false,false
         );
@@ -59,42 +63,60 @@ public class BarGraph extends JPanel {
     }
 
     /**
-     *  Creates the dataset used for the bar graph
+     *  Replaces the values of the dataset with the ones of all the monitored patients.
      */
-    private CategoryDataset createDataset() {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-
-        // Iterate through all patients
-        PatientListIterator patientListIterator = MONITORED_PATIENTS.createIterator();
-
-        if (MONITORED_PATIENTS.count() > 0) {
-            // Current patient
-            AppPatient patient = patientListIterator.currentItem();
-
-            // Parse cholesterol level
-            float cholesterolLevel = 0;
-            if (!patient.getCholesterolLevel().equals("N/A")) {
-                cholesterolLevel = Float.parseFloat(patient.getCholesterolLevel());
-            }
-
-            // Add patient to graph
-            dataset.addValue(cholesterolLevel, patient.getName(), patient.getName());
+    public void reload() {
+        DATASET.setNotify(false);
+        DATASET.clear();
+        for (int i = 0; i < MONITORED_PATIENTS.count(); i++) {
+            setPatientValue(MONITORED_PATIENTS.get(i));
+        }
+        DATASET.setNotify(true);
+    }
 
-            while (!patientListIterator.isDone()) {
-                // Current patient
-                patient = patientListIterator.next(); // increment
+    /**
+     *  Updates the values of the patients that changed, with a single change event for all of them.
+     *
+     *  @param patients: The changed patients
+     */
+    public void updatePatients(Collection<AppPatient> patients) {
+        if (patients.isEmpty()) {
+            return;
+        }
+        DATASET.setNotify(false);
+        for (AppPatient patient : patients) {
+            setPatientValue(patient);
+        }
+        DATASET.setNotify(true);
+    }
 
-                // Parse cholesterol level
-                cholesterolLevel = 0;
-                if (!patient.getCholesterolLevel().equals("N/A")) {
-                    cholesterolLevel = Float.parseFloat(patient.getCholesterolLevel());
-                }
+    /**
+     *  Removes a patient that is no longer monitored.
+     *
+     *  @param patient: The removed patient
+     */
+    public void removePatient(AppPatient patient) {
+        PatientKey key = new PatientKey(patient);
+        if (DATASET.getRowIndex(key) >= 0) {
+            DATASET.setNotify(false);
+            DATASET.removeRow(key);
+            DATASET.removeColumn(key);
+            DATASET.setNotify(true);
+        }
+    }
 
-                // Add patient to graph
-                dataset.addValue(cholesterolLevel, patient.getName(), patient.getName());
-            }
+    /**
+     *  Sets the cholesterol level of a patient, adding the patient if it is not in the graph yet.
+     */
+    private void setPatientValue(AppPatient patient) {
+        // Cholesterol level
+        float cholesterolLevel = 0;
+        if (patient.hasCholesterol()) {
+            cholesterolLevel = patient.getCholesterolValue();
         }
 
-        return dataset;
+        // Add patient to graph
+        PatientKey key = new PatientKey(patient);
+        DATASET.setValue(cholesterolLevel, key, key);
     }
 }
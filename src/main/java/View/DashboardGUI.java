@@ -1,13 +1,24 @@
 package View;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.*;
-
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import Model.AlertEngine;
+import Model.AlertListener;
 import Model.AppPractitioner;
 import Model.AppPatient;
+import Model.MonitorPatientList;
+import Model.PatientListListener;
 
 /**
  *  Creates the dashboard page so the practitioner can monitor their patients
@@ -24,11 +35,12 @@ public class DashboardGUI extends GUI {
     private JTextArea bloodPressureValues;
 
     // Table data
-    private DefaultTableModel monitorTableModel;
-    private boolean cholesterolState;
-    private boolean bloodPressureState;
-    private int systolicReading;
-    private int diastolicReading;
+    private MonitorTableModel monitorTableModel;
+    private JTable monitorTable;
+    private MonitorTableSorter monitorTableSorter;
+
+    // Ids of the patients whose alerts changed since their rows were last updated
+    private final Set<String> alertedPatients;
 
     // Table buttons and text fields
     private JButton cholesterolSwitch;
@@ -39,9 +51,23 @@ public class DashboardGUI extends GUI {
     private JButton diastolicSetButton;
     private JLabel bloodPressureFeedback;
 
+    // Monitor filter, the patients with high readings can be shown on their own
+    private static final String[] MONITOR_FILTERS = {"All patients", "High cholesterol", "High systolic", "High diastolic", "Rising blood pressure"};
+    private static final int[] MONITOR_FILTER_ALERTS = {0, AlertEngine.HIGH_CHOLESTEROL, AlertEngine.HIGH_SYSTOLIC, AlertEngine.HIGH_DIASTOLIC, AlertEngine.RISING_BLOOD_PRESSURE};
+    private JComboBox<String> monitorFilterBox;
+
+    // Tabs, the hidden ones are only rebuilt once they are shown
+    private static final int CHOLESTEROL_GRAPH_TAB = 1;
+    private static final int BLOOD_PRESSURE_GRAPH_TAB = 2;
+    private static final int BLOOD_PRESSURE_TEXT_TAB = 3;
+    private JTabbedPane tabbedPane;
+    private boolean cholesterolGraphDirty;
+    private boolean bloodPressureGraphDirty;
+    private boolean bloodPressureTextDirty;
+
     // Graphs
-    private JPanel cholesterolGraphCard;
-    private JPanel bloodPressureGraphCard;
+    private BarGraph cholesterolGraph;
+    private LineGraph bloodPressureGraph;
 
     // Practitioner
     private final AppPractitioner PRACTITIONER;
@@ -58,71 +84,191 @@ public class DashboardGUI extends GUI {
         // Setup instance variables
         this.PRACTITIONER = practitioner;
 
-        // Predetermined values
-        this.cholesterolState = true;
-        this.bloodPressureState = true;
-        this.systolicReading = 9999;
-        this.diastolicReading = 9999;
+        this.alertedPatients = new HashSet<String>();
+
+        // Rows are coloured and filtered by the alerts of their patients, so they are updated when the alerts change
+        PRACTITIONER.getAlertEngine().addAlertListener(new AlertListener() {
+            public void alertsChanged(AppPatient patient, int previousAlerts, int alerts) {
+                alertedPatients.add(patient.getId());
+            }
+        });
 
         // Create dashboard page
         createDashboardPanel();
+
+        // Show patients retrieved after the dashboard was created
+        PRACTITIONER.addPatientListListener(allPatientsPanel);
+        PRACTITIONER.addPatientListListener(new PatientListListener() {
+            public void patientsAdded(int firstIndex, int lastIndex) {}
+
+            public void patientsUpdated(int firstIndex, int lastIndex) {
+                // Monitored patients may have new details
+                refreshChangedPatients();
+                refreshBloodPressureText();
+            }
+        });
     }
 
     /**
      * Refreshes the patient monitor.
      */
     public void refreshMonitorTableModel() {
-        final int CHOLESTEROL = 1;
-        final int CHOLESTEROL_TIME = 2;
-        final int SYSTOLIC = 3;
-        final int DIASTOLIC = 4;
-        final int BP_TIME = 5;
-
-        // Updates the visibility of cholesterol cells
-        int columns = monitorTableModel.getColumnCount();
-        int rows = monitorTableModel.getRowCount();
-        for (int row = 0; row < rows; row++) {
-            final String CHOLESTEROL_STR = PRACTITIONER.getPatientFromMonitorList(row).getCholesterolLevel();
-            final String SYSTOLIC_STR = PRACTITIONER.getPatientFromMonitorList(row).getLatestSystolicBloodPressure();
-            final String DIASTOLIC_STR = PRACTITIONER.getPatientFromMonitorList(row).getLatestDiastolicBloodPressure();
-            for (int column = 0; column < columns; column++) {
-                // Updates the visibility of cholesterol cells
-                if (!cholesterolState && (column == CHOLESTEROL || column == CHOLESTEROL_TIME)) {
-                    monitorTableModel.setValueAt("-", row, column);
-                } else {
-                    if (column == CHOLESTEROL) {
-                        monitorTableModel.setValueAt(CHOLESTEROL_STR, row, column);
-                    } else if (column == CHOLESTEROL_TIME) {
-                        final String CHOLESTEROL_TIME_STR = PRACTITIONER.getPatientFromMonitorList(row).getEffectiveDateTimeCholesterol();
-                        monitorTableModel.setValueAt(CHOLESTEROL_TIME_STR, row, column);
-                    }
-                }
+        // Every cell may have changed, such as when cells are shown or hidden
+        BitSet changedRows = PRACTITIONER.getMonitorPatientList().takeChangedRows();
+        alertedPatients.clear();
+        monitorTableModel.fireTableDataChanged();
 
-                // Updates the visibility of blood pressure cells
-                if (!bloodPressureState && (column == SYSTOLIC || column == DIASTOLIC || column == BP_TIME)) {
-                    monitorTableModel.setValueAt("-", row, column);
-                } else {
-                    if (column == SYSTOLIC) {
-                        monitorTableModel.setValueAt(SYSTOLIC_STR, row, column);
-                    } else if (column == DIASTOLIC) {
-                        monitorTableModel.setValueAt(DIASTOLIC_STR, row, column);
-                    } else if (column == BP_TIME) {
-                        final String BLOOD_PRESSURE_TIME_STR = PRACTITIONER.getPatientFromMonitorList(row).getLatestEffectiveDateTimeBloodPressure();
-                        monitorTableModel.setValueAt(BLOOD_PRESSURE_TIME_STR, row, column);
-                    }
-                }
+        refreshGraphs(changedRows);
+    }
+
+    /**
+     * Refreshes only the rows of the patient monitor whose patients have changed since the last refresh.
+     */
+    public void refreshChangedPatients() {
+        BitSet changedRows = PRACTITIONER.getMonitorPatientList().takeChangedRows();
+
+        // Patients whose alerts changed with the average cholesterol are updated as well
+        BitSet updatedRows = takeAlertedRows();
+        updatedRows.or(changedRows);
+        monitorTableModel.fireRowsUpdated(updatedRows);
+
+        refreshGraphs(changedRows);
+    }
+
+    /**
+     * Returns the rows of the monitored patients whose alerts changed since the last call, and clears them.
+     */
+    private BitSet takeAlertedRows() {
+        MonitorPatientList monitoredPatients = PRACTITIONER.getMonitorPatientList();
+        BitSet rows = new BitSet(monitoredPatients.count());
+        for (String patientID : alertedPatients) {
+            int index = monitoredPatients.indexOfId(patientID);
+            if (index != -1) {
+                rows.set(index);
             }
         }
+        alertedPatients.clear();
+        return rows;
+    }
 
-        monitorTableModel.fireTableDataChanged();
+    /**
+     * Updates the graphs with the values of the changed monitored patients.
+     * @param changedRows The rows of the changed patients.
+     */
+    private void refreshGraphs(BitSet changedRows) {
+        if (changedRows.isEmpty()) {
+            return;
+        }
+        List<AppPatient> changedPatients = new ArrayList<AppPatient>(changedRows.cardinality());
+        for (int row = changedRows.nextSetBit(0); row >= 0; row = changedRows.nextSetBit(row + 1)) {
+            changedPatients.add(PRACTITIONER.getPatientFromMonitorList(row));
+        }
+        updateGraphs(changedPatients);
+    }
+
+    /**
+     * Updates the patients in the graph that is shown, the hidden graphs are marked to be rebuilt when shown.
+     * @param patients The changed patients.
+     */
+    private void updateGraphs(List<AppPatient> patients) {
+        if (isTabShown(CHOLESTEROL_GRAPH_TAB)) {
+            cholesterolGraph.updatePatients(patients);
+        } else {
+            cholesterolGraphDirty = true;
+        }
+
+        if (isTabShown(BLOOD_PRESSURE_GRAPH_TAB)) {
+            bloodPressureGraph.updatePatients(patients);
+        } else {
+            bloodPressureGraphDirty = true;
+        }
+    }
+
+    /**
+     * Removes a patient from the graph that is shown, the hidden graphs are marked to be rebuilt when shown.
+     * @param patient The removed patient.
+     */
+    private void removeFromGraphs(AppPatient patient) {
+        if (isTabShown(CHOLESTEROL_GRAPH_TAB)) {
+            cholesterolGraph.removePatient(patient);
+        } else {
+            cholesterolGraphDirty = true;
+        }
 
-        // Refresh cholesterol graph
-        cholesterolGraphCard.removeAll();
-        cholesterolGraphCard.add(new BarGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330)));
+        if (isTabShown(BLOOD_PRESSURE_GRAPH_TAB)) {
+            bloodPressureGraph.removePatient(patient);
+        } else {
+            bloodPressureGraphDirty = true;
+        }
+    }
 
-        // Refresh blood pressure graph
-        bloodPressureGraphCard.removeAll();
-        bloodPressureGraphCard.add(new LineGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330)));
+    /**
+     * Updates the textual systolic blood pressures if their tab is shown, otherwise they are created once it is shown.
+     */
+    public void refreshBloodPressureText() {
+        if (isTabShown(BLOOD_PRESSURE_TEXT_TAB)) {
+            updateBloodPressureText(PRACTITIONER.createBloodPressureDetails());
+            bloodPressureTextDirty = false;
+        } else {
+            bloodPressureTextDirty = true;
+        }
+    }
+
+    /**
+     * Checks if a tab is the one being shown.
+     * @param tab The index of the tab.
+     */
+    private boolean isTabShown(int tab) {
+        return tabbedPane.getSelectedIndex() == tab;
+    }
+
+    /**
+     * Rebuilds the content of the shown tab if it changed while it was hidden.
+     */
+    private void refreshShownTab() {
+        if (isTabShown(CHOLESTEROL_GRAPH_TAB) && cholesterolGraphDirty) {
+            cholesterolGraph.reload();
+            cholesterolGraphDirty = false;
+        } else if (isTabShown(BLOOD_PRESSURE_GRAPH_TAB) && bloodPressureGraphDirty) {
+            bloodPressureGraph.reload();
+            bloodPressureGraphDirty = false;
+        } else if (isTabShown(BLOOD_PRESSURE_TEXT_TAB) && bloodPressureTextDirty) {
+            refreshBloodPressureText();
+        }
+    }
+
+    /**
+     * Shows only the monitored patients with an alert of one kind, or all of them.
+     * @param filter The index of the filter within the filter box.
+     */
+    public void setMonitorFilter(int filter) {
+        final int ALERT = MONITOR_FILTER_ALERTS[filter];
+        if (ALERT == 0) {
+            monitorTableSorter.setRowFilter(null);
+            return;
+        }
+
+        monitorTableSorter.setRowFilter(new RowFilter<MonitorTableModel, Integer>() {
+            public boolean include(Entry<? extends MonitorTableModel, ? extends Integer> entry) {
+                return PRACTITIONER.getAlertEngine().hasAlert(MonitorTableSorter.getPatient(entry), ALERT);
+            }
+        });
+    }
+
+    /**
+     * Getter for the filter chosen in the filter box.
+     * @return The index of the filter
+     */
+    public int getSelectedMonitorFilter() {
+        return monitorFilterBox.getSelectedIndex();
+    }
+
+    /**
+     * Adds listener for the monitor filter box.
+     * @param listener The listener class used to control the filter box's action.
+     */
+    public void addMonitorFilterListener(ActionListener listener) {
+        monitorFilterBox.addActionListener(listener);
     }
 
     /**
@@ -178,7 +324,8 @@ public class DashboardGUI extends GUI {
      * @param newSystolicReading The new minimum systolic reading
      */
     public void setSystolicReading(int newSystolicReading) {
-        systolicReading = newSystolicReading;
+        PRACTITIONER.getAlertEngine().setSystolicLimit(newSystolicReading);
+        monitorTableModel.fireRowsUpdated(takeAlertedRows());
     }
 
     /**
@@ -186,7 +333,8 @@ public class DashboardGUI extends GUI {
      * @param newDiastolicReading The new minimum diastolic reading
      */
     public void setDiastolicReading(int newDiastolicReading) {
-        diastolicReading = newDiastolicReading;
+        PRACTITIONER.getAlertEngine().setDiastolicLimit(newDiastolicReading);
+        monitorTableModel.fireRowsUpdated(takeAlertedRows());
     }
 
     /**
@@ -201,14 +349,18 @@ public class DashboardGUI extends GUI {
      * Switches the status of the cholesterol state.
      */
     public void switchCholesterolState() {
-        cholesterolState = !cholesterolState;
+        monitorTableModel.setCholesterolState(!monitorTableModel.getCholesterolState());
+        monitorTableSorter.setColumnsSortable(monitorTableModel.getCholesterolState(),
+                MonitorTableModel.CHOLESTEROL, MonitorTableModel.CHOLESTEROL_TIME);
     }
 
     /**
      * Switches the status of the blood pressure state.
      */
     public void switchBloodPressureState() {
-        bloodPressureState = !bloodPressureState;
+        monitorTableModel.setBloodPressureState(!monitorTableModel.getBloodPressureState());
+        monitorTableSorter.setColumnsSortable(monitorTableModel.getBloodPressureState(),
+                MonitorTableModel.SYSTOLIC, MonitorTableModel.DIASTOLIC, MonitorTableModel.BP_TIME);
     }
 
     /**
@@ -261,6 +413,14 @@ public class DashboardGUI extends GUI {
     public void addMonitorTableToPane(Container pane) {
         pane.setLayout(new BoxLayout(pane, BoxLayout.Y_AXIS));
 
+        // Monitor filter box
+        JPanel filterPanel = new JPanel();
+        filterPanel.add(new JLabel("Show:"));
+        monitorFilterBox = new JComboBox<String>(MONITOR_FILTERS);
+        filterPanel.add(monitorFilterBox);
+        filterPanel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        pane.add(filterPanel);
+
         // Patient measurement table
         createMonitorTable(pane);
 
@@ -317,63 +477,30 @@ public class DashboardGUI extends GUI {
      * @param panel:    Used to encapsulate the table of patients cholesterol data
      */
     public void createMonitorTable(Container panel) {
-        // Patient table column headings
-        String[] columnNames = {"Name", "Total Cholesterol (mg/dL)", "Time", "Systolic Blood Pressure (mmHg)", "Diastolic Blood Pressure (mmHg)", "Time"};
-
-        // Set up table data
-        monitorTableModel = new DefaultTableModel(columnNames, 0);
+        // Set up table data, read straight from the monitored patients
+        monitorTableModel = new MonitorTableModel(PRACTITIONER.getMonitorPatientList());
 
         final JTable TABLE = new JTable(monitorTableModel) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                // Disables cell editing
-                return false;
-            }
-
             @Override
             public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
                 Component c = super.prepareRenderer(renderer, row, column);
 
-                final int CHOLESTEROL = 1;
-                final int SYSTOLIC = 3;
-                final int DIASTOLIC = 4;
-
-                final String CHOLESTEROL_STR = PRACTITIONER.getPatientFromMonitorList(row).getCholesterolLevel();
-                final String SYSTOLIC_STR = PRACTITIONER.getPatientFromMonitorList(row).getLatestSystolicBloodPressure();
-                final String DIASTOLIC_STR = PRACTITIONER.getPatientFromMonitorList(row).getLatestDiastolicBloodPressure();
-                final Object CELL_VALUE = this.getValueAt(row, column);
-
-                // Compare current patients cholesterol
-                if ((column == CHOLESTEROL) && (!CHOLESTEROL_STR.equals("N/A") && (!CELL_VALUE.equals("-")))) {
-
-                    float currCholesterol = Float.parseFloat(CHOLESTEROL_STR);
-                    float averageCholesterol = PRACTITIONER.getMonitorPatientList().getAverageCholesterol();
-
-                    if ((currCholesterol > averageCholesterol) && (PRACTITIONER.getMonitorPatientList().count() > 1)) {
-                        c.setForeground(Color.RED);     // Abnormal cholesterol
-                    } else {
-                        c.setForeground(Color.BLACK);   // Normal cholesterol
-                    }
-
-                } else if ((column == SYSTOLIC) && (!SYSTOLIC_STR.equals("N/A")) && (!CELL_VALUE.equals("-"))) {
-                    // Compare the systolic values of the patient
-
-                    float currSystolic = Float.parseFloat(SYSTOLIC_STR);
-
-                    if ((currSystolic > systolicReading) && (PRACTITIONER.getMonitorPatientList().count() > 0)) {
-                        c.setForeground(Color.RED);     // Abnormal systolic values
-                    } else {
-                        c.setForeground(Color.BLACK);   // Normal systolic values
-                    }
-                } else if ((column == DIASTOLIC) && (!DIASTOLIC_STR.equals("N/A")) && (!CELL_VALUE.equals("-"))) {
-                    // Compare the diastolic values of the patient
-                    float currDiastolic = Float.parseFloat(DIASTOLIC_STR);
-
-                    if ((currDiastolic > diastolicReading) && (PRACTITIONER.getMonitorPatientList().count() > 0)) {
-                        c.setForeground(Color.RED);     // Abnormal diastolic values
-                    } else {
-                        c.setForeground(Color.BLACK);   // Normal diastolic values
-                    }
+                final int CHOLESTEROL = MonitorTableModel.CHOLESTEROL;
+                final int SYSTOLIC = MonitorTableModel.SYSTOLIC;
+                final int DIASTOLIC = MonitorTableModel.DIASTOLIC;
+
+                // Alerts are evaluated when the readings change, so painting only looks them up
+                final AppPatient PATIENT = monitorTableModel.getPatient(convertRowIndexToModel(row));
+                final int ALERTS = PRACTITIONER.getAlertEngine().getAlerts(PATIENT);
+                final boolean CHOLESTEROL_SHOWN = monitorTableModel.getCholesterolState();
+                final boolean BLOOD_PRESSURE_SHOWN = monitorTableModel.getBloodPressureState();
+
+                if ((column == CHOLESTEROL) && CHOLESTEROL_SHOWN && (ALERTS & AlertEngine.HIGH_CHOLESTEROL) != 0) {
+                    c.setForeground(Color.RED);     // Abnormal cholesterol
+                } else if ((column == SYSTOLIC) && BLOOD_PRESSURE_SHOWN && (ALERTS & AlertEngine.HIGH_SYSTOLIC) != 0) {
+                    c.setForeground(Color.RED);     // Abnormal systolic values
+                } else if ((column == DIASTOLIC) && BLOOD_PRESSURE_SHOWN && (ALERTS & AlertEngine.HIGH_DIASTOLIC) != 0) {
+                    c.setForeground(Color.RED);     // Abnormal diastolic values
                 } else {
                     c.setForeground(Color.BLACK);   // Normal cell
                 }
@@ -389,8 +516,8 @@ public class DashboardGUI extends GUI {
             public void mouseClicked(MouseEvent e) {
                 int selectedRow = TABLE.getSelectedRow();
                 // Only get patient details if the table has at least one patient
-                if (PRACTITIONER.getMonitorPatientList().count() > 0) {
-                    AppPatient patient = PRACTITIONER.getPatientFromMonitorList(selectedRow);
+                if (PRACTITIONER.getMonitorPatientList().count() > 0 && selectedRow >= 0) {
+                    AppPatient patient = monitorTableModel.getPatient(TABLE.convertRowIndexToModel(selectedRow));
 
                     // Update patient detail box
                     patientDetailsPane.setBirthDateLabel(patient.getBirthDate());
@@ -400,6 +527,11 @@ public class DashboardGUI extends GUI {
             }
         };
         TABLE.addMouseListener(tableMouseListener);
+        monitorTable = TABLE;
+
+        // Sorted by clicking the column headers, comparing the readings rather than the shown text
+        monitorTableSorter = new MonitorTableSorter(monitorTableModel);
+        TABLE.setRowSorter(monitorTableSorter);
 
         // Setup table
         TABLE.getTableHeader().setReorderingAllowed(false); // Disables column dragging
@@ -425,12 +557,13 @@ public class DashboardGUI extends GUI {
         // Add patient to table
         boolean patientAdded = PRACTITIONER.addPatientToMonitorList(patient);
         if (patientAdded) {
-            Object[] cholesterolDetails = {patient.getName(), patient.getCholesterolLevel(), patient.getEffectiveDateTimeCholesterol(), patient.getLatestSystolicBloodPressure(), patient.getLatestDiastolicBloodPressure(), patient.getLatestEffectiveDateTimeBloodPressure()};
-            monitorTableModel.addRow(cholesterolDetails);
+            int patientIndex = PRACTITIONER.getMonitorPatientList().count() - 1;
+            monitorTableModel.fireTableRowsInserted(patientIndex, patientIndex);
 
             // Show changes
-            updateBloodPressureText(PRACTITIONER.createBloodPressureDetails());
-            refreshMonitorTableModel();
+            refreshBloodPressureText();
+            monitorTableModel.fireRowsUpdated(takeAlertedRows());
+            updateGraphs(Collections.singletonList(patient));
         }
         return patientAdded;
     }
@@ -445,11 +578,12 @@ public class DashboardGUI extends GUI {
         int patientIndex = PRACTITIONER.getMonitorPatientList().indexOf(patient);
         boolean patientRemoved = PRACTITIONER.removePatientFromMonitorList(patient);
         if (patientRemoved) {
-            monitorTableModel.removeRow(patientIndex);
+            monitorTableModel.fireTableRowsDeleted(patientIndex, patientIndex);
 
             // Show changes
-            updateBloodPressureText(PRACTITIONER.createBloodPressureDetails());
-            refreshMonitorTableModel();
+            refreshBloodPressureText();
+            monitorTableModel.fireRowsUpdated(takeAlertedRows());
+            removeFromGraphs(patient);
         }
         return patientRemoved;
     }
@@ -459,21 +593,23 @@ public class DashboardGUI extends GUI {
      * @param pane The pane to add the tabbed view to
      */
     public void addTabbedComponentToPane(Container pane) {
-        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane = new JTabbedPane();
 
         // Patient monitor tab
         JPanel monitorCard = new JPanel();
         addMonitorTableToPane(monitorCard);
         tabbedPane.addTab("Patient Monitor", monitorCard);
 
-        // Cholesterol graph tab
-        cholesterolGraphCard = new JPanel();
-        cholesterolGraphCard.add(new BarGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330)));
+        // Cholesterol graph tab, built once and updated in place
+        JPanel cholesterolGraphCard = new JPanel();
+        cholesterolGraph = new BarGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330));
+        cholesterolGraphCard.add(cholesterolGraph);
         tabbedPane.addTab("Cholesterol Graph", cholesterolGraphCard);
 
-        // Blood Pressure graph tab
-        bloodPressureGraphCard = new JPanel();
-        bloodPressureGraphCard.add(new LineGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330)));
+        // Blood Pressure graph tab, built once and updated in place
+        JPanel bloodPressureGraphCard = new JPanel();
+        bloodPressureGraph = new LineGraph(PRACTITIONER.getMonitorPatientList(), new Dimension(1220, 330));
+        bloodPressureGraphCard.add(bloodPressureGraph);
         tabbedPane.addTab("Blood Pressure Graphs", bloodPressureGraphCard);
 
         // Systolic Blood pressure tab
@@ -483,6 +619,13 @@ public class DashboardGUI extends GUI {
         bloodPressureCard.add(bloodPressureValues);
         tabbedPane.addTab("Latest Systolic Blood Pressure", bloodPressureCard);
 
+        // Hidden tabs are only brought up to date once they are shown
+        tabbedPane.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                refreshShownTab();
+            }
+        });
+
         tabbedPane.setPreferredSize(new Dimension(1220, 380));
         tabbedPane.setMaximumSize(new Dimension(1220, 380));
 
@@ -2,20 +2,20 @@ package View;
 
 import Model.AppPatient;
 import Model.PatientList;
-import Model.PatientListIterator;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.category.CategoryDataset;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Collection;
 
 /**
  *  Creates the systolic blood pressure line graph panel so the practitioner can
- *  monitor their patients in a graphical form for an overall picture.
+ *  monitor their patients in a graphical form for an overall picture. The graph is built once, and its dataset is
+ *  updated in place when patients change.
  *
  *  @author Mujtaba Zahidi
  */
@@ -24,6 +24,9 @@ public class LineGraph extends JPanel {
     // List of patients
     private PatientList monitoredPatients;
 
+    // Systolic blood pressures of each patient, with the reading number as the category
+    private final DefaultCategoryDataset dataset;
+
     /**
      * Creates the line graph panel of systolic blood pressure values
      * @param monitoredPatients The patients currently monitored
@@ -36,7 +39,8 @@ public class LineGraph extends JPanel {
         this.monitoredPatients = monitoredPatients;
 
         // Create Dataset
-        CategoryDataset dataset = createDataset();
+        this.dataset = new DefaultCategoryDataset();
+        reload();
 
         //Create chart
         JFreeChart chart = ChartFactory.createLineChart(
@@ -59,67 +63,67 @@ public class LineGraph extends JPanel {
     }
 
     /**
-     *  Creates the dataset used for the line graph
+     *  Replaces the values of the dataset with the ones of all the monitored patients.
+     */
+    public void reload() {
+        dataset.setNotify(false);
+        dataset.clear();
+        for (int i = 0; i < monitoredPatients.count(); i++) {
+            setPatientValues(monitoredPatients.get(i));
+        }
+        dataset.setNotify(true);
+    }
+
+    /**
+     *  Updates the values of the patients that changed, with a single change event for all of them.
+     *
+     *  @param patients: The changed patients
+     */
+    public void updatePatients(Collection<AppPatient> patients) {
+        if (patients.isEmpty()) {
+            return;
+        }
+        dataset.setNotify(false);
+        for (AppPatient patient : patients) {
+            setPatientValues(patient);
+        }
+        dataset.setNotify(true);
+    }
+
+    /**
+     *  Removes a patient that is no longer monitored.
+     *
+     *  @param patient: The removed patient
+     */
+    public void removePatient(AppPatient patient) {
+        PatientKey key = new PatientKey(patient);
+        if (dataset.getRowIndex(key) >= 0) {
+            dataset.removeRow(key);
+        }
+    }
+
+    /**
+     *  Sets the blood pressure values of a patient, adding the patient if it has values and is not in the graph yet.
      */
-    private CategoryDataset createDataset() {
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-
-        // Iterate through all patients
-        PatientListIterator patientListIterator = monitoredPatients.createIterator();
-
-        if (monitoredPatients.count() > 0) {
-            // Current patient
-            AppPatient patient = patientListIterator.currentItem();
-
-            // Check to see if it has blood pressure values
-            if (patient.getSystolicBloodPressure() != null) {
-                // Retrieve each value
-                String name = patient.getName();
-                String[] values = patient.getSystolicBloodPressure();
-
-                // Parse blood pressure level
-                float bloodPressureLevel = 0;
-
-                // Loop through each values and dates
-                for (int i = 0; i < values.length; i++) {
-                    try {
-                        if (!values[i].equals("N/A")) {
-                            bloodPressureLevel = Float.parseFloat(values[i]);
-                            // Add patient to graph
-                            dataset.addValue(bloodPressureLevel, name, "" + (i + 1));
-                        }
-                    } catch (Exception e) {
-                        continue;
-                    }
-                }
-                while (!patientListIterator.isDone()) {
-                    // Current patient
-                    patient = patientListIterator.next(); // increment
-
-                    // Retrieve each value
-                    name = patient.getName();
-                    values = patient.getSystolicBloodPressure();
-
-                    // Parse blood pressure level
-                    bloodPressureLevel = 0;
-
-                    // Loop through each values and dates
-                    for (int i = 0; i < values.length; i++) {
-                        try {
-                            if (!values[i].equals("N/A")) {
-                                bloodPressureLevel = Float.parseFloat(values[i]);
-                                // Add patient to graph
-                                dataset.addValue(bloodPressureLevel, name, "" + (i + 1));
-                            }
-                        } catch (Exception e) {
-                            continue;
-                        }
-                    }
-                }
+    private void setPatientValues(AppPatient patient) {
+        PatientKey key = new PatientKey(patient);
+
+        // Patients without blood pressure values are left out of the graph
+        if (patient.getBloodPressureCount() == 0) {
+            if (dataset.getRowIndex(key) >= 0) {
+                dataset.removeRow(key);
             }
+            return;
+        }
 
-            return dataset;
+        // Add each value to the graph, readings the patient no longer has are left empty
+        for (int i = 0; i < AppPatient.BLOOD_PRESSURE_READINGS; i++) {
+            String reading = "" + (i + 1);
+            if (i < patient.getBloodPressureCount()) {
+                dataset.setValue(patient.getSystolic(i), key, reading);
+            } else if (dataset.getRowIndex(key) >= 0 && dataset.getColumnIndex(reading) >= 0) {
+                dataset.setValue(null, key, reading);
+            }
         }
-        return null;
     }
 }
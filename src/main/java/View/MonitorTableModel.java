@@ -0,0 +1,149 @@
+package View;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.BitSet;
+
+import Model.AppPatient;
+import Model.PatientList;
+
+/**
+ *  Table model of the patient monitor, backed directly by the monitored patients. The cells are read from the
+ *  patients when they are painted, so a refresh only has to tell the table which rows have changed.
+ */
+public class MonitorTableModel extends AbstractTableModel {
+    // Columns
+    public static final int NAME = 0;
+    public static final int CHOLESTEROL = 1;
+    public static final int CHOLESTEROL_TIME = 2;
+    public static final int SYSTOLIC = 3;
+    public static final int DIASTOLIC = 4;
+    public static final int BP_TIME = 5;
+
+    private static final String[] COLUMN_NAMES = {"Name", "Total Cholesterol (mg/dL)", "Time", "Systolic Blood Pressure (mmHg)", "Diastolic Blood Pressure (mmHg)", "Time"};
+
+    private final PatientList MONITORED_PATIENTS;
+    private boolean cholesterolState;
+    private boolean bloodPressureState;
+
+    /**
+     *  Sets up the table model.
+     *
+     *  @param monitoredPatients: The monitored patients shown by the table
+     */
+    public MonitorTableModel(PatientList monitoredPatients) {
+        this.MONITORED_PATIENTS = monitoredPatients;
+        this.cholesterolState = true;
+        this.bloodPressureState = true;
+    }
+
+    @Override
+    public int getRowCount() {
+        return MONITORED_PATIENTS.count();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        // Disables cell editing
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        AppPatient patient = getPatient(row);
+
+        // Hidden cells
+        if (!cholesterolState && (column == CHOLESTEROL || column == CHOLESTEROL_TIME)) {
+            return "-";
+        }
+        if (!bloodPressureState && (column == SYSTOLIC || column == DIASTOLIC || column == BP_TIME)) {
+            return "-";
+        }
+
+        switch (column) {
+            case NAME:
+                return patient.getName();
+            case CHOLESTEROL:
+                return patient.getCholesterolLevel();
+            case CHOLESTEROL_TIME:
+                return patient.getEffectiveDateTimeCholesterol();
+            case SYSTOLIC:
+                return patient.getLatestSystolicBloodPressure();
+            case DIASTOLIC:
+                return patient.getLatestDiastolicBloodPressure();
+            case BP_TIME:
+                return patient.getLatestEffectiveDateTimeBloodPressure();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     *  Returns the patient shown in a row.
+     *
+     *  @param row: The row in the model
+     */
+    public AppPatient getPatient(int row) {
+        return MONITORED_PATIENTS.get(row);
+    }
+
+    /**
+     *  Getter for whether the cholesterol cells are shown.
+     */
+    public boolean getCholesterolState() {
+        return cholesterolState;
+    }
+
+    /**
+     *  Setter for whether the cholesterol cells are shown.
+     */
+    public void setCholesterolState(boolean cholesterolState) {
+        this.cholesterolState = cholesterolState;
+    }
+
+    /**
+     *  Getter for whether the blood pressure cells are shown.
+     */
+    public boolean getBloodPressureState() {
+        return bloodPressureState;
+    }
+
+    /**
+     *  Setter for whether the blood pressure cells are shown.
+     */
+    public void setBloodPressureState(boolean bloodPressureState) {
+        this.bloodPressureState = bloodPressureState;
+    }
+
+    /**
+     *  Tells the table that some rows have changed, every run of consecutive rows is updated at once. When many rows
+     *  have changed all of them are updated at once, so that a sorted table is sorted once rather than once per run.
+     *
+     *  @param rows: The changed rows
+     */
+    public void fireRowsUpdated(BitSet rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        if (rows.cardinality() > getRowCount() / 10 && getRowCount() > 0) {
+            fireTableRowsUpdated(0, getRowCount() - 1);
+            return;
+        }
+
+        int first = rows.nextSetBit(0);
+        while (first >= 0 && first < getRowCount()) {
+            int last = Math.min(rows.nextClearBit(first), getRowCount()) - 1;
+            fireTableRowsUpdated(first, last);
+            first = rows.nextSetBit(last + 1);
+        }
+    }
+}
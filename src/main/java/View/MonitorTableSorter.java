@@ -0,0 +1,152 @@
+package View;
+
+import javax.swing.RowFilter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableRowSorter;
+import java.util.Comparator;
+import java.util.List;
+
+import Model.AppPatient;
+
+/**
+ *  Sorter of the patient monitor. The cells of the table are formatted strings, so instead of comparing them the
+ *  sorter compares the readings of the patients themselves, which are stored as primitives. Rows of changed patients
+ *  are moved into place as the table reports them, without sorting the whole table again.
+ *
+ *  Filters are given the patient of each row as the value of every column.
+ */
+public class MonitorTableSorter extends TableRowSorter<MonitorTableModel> {
+    private static final Comparator<AppPatient> BY_NAME = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return String.CASE_INSENSITIVE_ORDER.compare(String.valueOf(first.getName()), String.valueOf(second.getName()));
+        }
+    };
+
+    private static final Comparator<AppPatient> BY_CHOLESTEROL = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return Float.compare(cholesterolKey(first), cholesterolKey(second));
+        }
+    };
+
+    private static final Comparator<AppPatient> BY_CHOLESTEROL_TIME = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return Long.compare(cholesterolTimeKey(first), cholesterolTimeKey(second));
+        }
+    };
+
+    private static final Comparator<AppPatient> BY_SYSTOLIC = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return Float.compare(systolicKey(first), systolicKey(second));
+        }
+    };
+
+    private static final Comparator<AppPatient> BY_DIASTOLIC = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return Float.compare(diastolicKey(first), diastolicKey(second));
+        }
+    };
+
+    private static final Comparator<AppPatient> BY_BP_TIME = new Comparator<AppPatient>() {
+        public int compare(AppPatient first, AppPatient second) {
+            return Long.compare(bloodPressureTimeKey(first), bloodPressureTimeKey(second));
+        }
+    };
+
+    /**
+     *  Sets up the sorter of a monitor table model.
+     *
+     *  @param model: The table model being sorted
+     */
+    public MonitorTableSorter(final MonitorTableModel model) {
+        super(model);
+        setModelWrapper(new ModelWrapper<MonitorTableModel, Integer>() {
+            public MonitorTableModel getModel() {
+                return model;
+            }
+
+            public int getColumnCount() {
+                return model.getColumnCount();
+            }
+
+            public int getRowCount() {
+                return model.getRowCount();
+            }
+
+            public Object getValueAt(int row, int column) {
+                return model.getPatient(row);
+            }
+
+            public String getStringValueAt(int row, int column) {
+                Object value = model.getValueAt(row, column);
+                return value == null ? "" : value.toString();
+            }
+
+            public Integer getIdentifier(int row) {
+                return row;
+            }
+        });
+
+        setComparator(MonitorTableModel.NAME, BY_NAME);
+        setComparator(MonitorTableModel.CHOLESTEROL, BY_CHOLESTEROL);
+        setComparator(MonitorTableModel.CHOLESTEROL_TIME, BY_CHOLESTEROL_TIME);
+        setComparator(MonitorTableModel.SYSTOLIC, BY_SYSTOLIC);
+        setComparator(MonitorTableModel.DIASTOLIC, BY_DIASTOLIC);
+        setComparator(MonitorTableModel.BP_TIME, BY_BP_TIME);
+        setSortsOnUpdates(true);
+        setMaxSortKeys(1);
+    }
+
+    /**
+     *  Sets whether some columns can be sorted, such as when their cells are hidden. The table is unsorted if it was
+     *  sorted by one of the columns that can no longer be sorted.
+     *
+     *  @param sortable: If the columns can be sorted
+     *  @param columns:  The columns
+     */
+    public void setColumnsSortable(boolean sortable, int... columns) {
+        boolean sortedByColumn = false;
+        List<? extends SortKey> sortKeys = getSortKeys();
+        for (int column : columns) {
+            setSortable(column, sortable);
+            for (SortKey sortKey : sortKeys) {
+                if (sortKey.getColumn() == column && sortKey.getSortOrder() != SortOrder.UNSORTED) {
+                    sortedByColumn = true;
+                }
+            }
+        }
+        if (!sortable && sortedByColumn) {
+            setSortKeys(null);
+        }
+    }
+
+    /**
+     *  Returns the patient of the row of a filter entry.
+     *
+     *  @param entry: The entry being filtered
+     */
+    public static AppPatient getPatient(RowFilter.Entry<? extends MonitorTableModel, ? extends Integer> entry) {
+        return (AppPatient) entry.getValue(MonitorTableModel.NAME);
+    }
+
+    // Sort keys, patients without a reading are sorted before all the others
+
+    private static float cholesterolKey(AppPatient patient) {
+        return patient.hasCholesterol() ? patient.getCholesterolValue() : Float.NEGATIVE_INFINITY;
+    }
+
+    private static long cholesterolTimeKey(AppPatient patient) {
+        return patient.hasCholesterol() ? patient.getCholesterolTime() : Long.MIN_VALUE;
+    }
+
+    private static float systolicKey(AppPatient patient) {
+        return patient.getBloodPressureCount() > 0 ? patient.getSystolic(0) : Float.NEGATIVE_INFINITY;
+    }
+
+    private static float diastolicKey(AppPatient patient) {
+        return patient.getBloodPressureCount() > 0 ? patient.getDiastolic(0) : Float.NEGATIVE_INFINITY;
+    }
+
+    private static long bloodPressureTimeKey(AppPatient patient) {
+        return patient.getBloodPressureCount() > 0 ? patient.getBloodPressureTime(0) : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,42 @@
+package View;
+
+import Model.AppPatient;
+
+/**
+ *  Key of a patient within a chart dataset. The key shows the patient's name, but two patients with the same name
+ *  still get their own keys, so that a patient's values can be updated or removed without touching the other one.
+ */
+class PatientKey implements Comparable<PatientKey> {
+    private final String id;
+    private final String name;
+
+    /**
+     *  Creates the key of a patient.
+     *
+     *  @param patient: The patient
+     */
+    PatientKey(AppPatient patient) {
+        this.id = patient.getId();
+        this.name = patient.getName();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof PatientKey && id.equals(((PatientKey) object).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public int compareTo(PatientKey other) {
+        return id.compareTo(other.id);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}